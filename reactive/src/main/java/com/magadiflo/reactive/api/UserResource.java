@@ -0,0 +1,188 @@
+package com.magadiflo.reactive.api;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.magadiflo.reactive.domain.Role;
+import com.magadiflo.reactive.domain.User;
+import com.magadiflo.reactive.dto.RoleAssignmentRequest;
+import com.magadiflo.reactive.dto.RoleAssignmentResult;
+import com.magadiflo.reactive.dto.UserCredentials;
+import com.magadiflo.reactive.dto.UserPage;
+import com.magadiflo.reactive.dto.UserSearchPage;
+import com.magadiflo.reactive.repository.UserSearchRepository.SearchField;
+import com.magadiflo.reactive.security.RevokedTokens;
+import com.magadiflo.reactive.security.TokenResponses;
+import com.magadiflo.reactive.security.TokenService;
+import com.magadiflo.reactive.service.DataVersion;
+import com.magadiflo.reactive.service.UserService;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Los mismos endpoints y respuestas que UserResource en la versión servlet, salvo la importación masiva
+ * (/api/users/import), que no se portó.
+ */
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/api")
+public class UserResource {
+
+    private static final String BEARER = "Bearer ";
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private final UserService userService;
+    private final TokenService tokenService;
+    private final TokenResponses tokenResponses;
+    private final RevokedTokens revokedTokens;
+    private final DataVersion dataVersion;
+
+    //ETag con la versión de los datos: si el cliente ya tiene la versión actual, 304 sin consultar la BD
+    @GetMapping(value = "/users", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<UserPage>> getUsers(@RequestParam(defaultValue = "0") long after,
+                                                   @RequestParam(defaultValue = "50") int limit,
+                                                   ServerWebExchange exchange) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        String eTag = eTag(this.dataVersion.current());
+        if (exchange.checkNotModified(eTag)) {
+            return Mono.empty(); //Spring ya dejó el 304 Not Modified con el ETag
+        }
+        return this.userService.getUsers(after, pageSize)
+                .map(page -> ResponseEntity.ok().eTag(eTag).body(page));
+    }
+
+    //Todos los usuarios, uno por línea, a medida que se leen de la BD
+    @GetMapping(value = "/users", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<User> streamUsers() {
+        return this.userService.streamUsers();
+    }
+
+    @GetMapping("/users/search")
+    public Mono<UserSearchPage> searchUsers(@RequestParam(defaultValue = "") String q,
+                                            @RequestParam(defaultValue = "username") String by,
+                                            @RequestParam(required = false) String role,
+                                            @RequestParam(required = false) String after,
+                                            @RequestParam(defaultValue = "50") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return Mono.defer(() -> this.userService.searchUsers(SearchField.valueOf(by.toUpperCase(Locale.ROOT)),
+                        q.trim(), role, after, pageSize))
+                //by desconocido o cursor inválido
+                .onErrorMap(IllegalArgumentException.class, e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+
+    @GetMapping("/roles")
+    public Mono<ResponseEntity<List<Role>>> getRoles(ServerWebExchange exchange) {
+        String eTag = eTag(this.dataVersion.current());
+        if (exchange.checkNotModified(eTag)) {
+            return Mono.empty();
+        }
+        return this.userService.getRoles().collectList()
+                .map(roles -> ResponseEntity.ok().eTag(eTag).body(roles));
+    }
+
+    @PostMapping("/user/save")
+    public Mono<ResponseEntity<User>> saveUser(@RequestBody User user, ServerWebExchange exchange) {
+        URI uri = exchange.getRequest().getURI();
+        return this.userService.saveUser(user).map(saved -> ResponseEntity.created(uri).body(saved));
+    }
+
+    @PostMapping("/role/save")
+    public Mono<ResponseEntity<Role>> saveRole(@RequestBody Role role, ServerWebExchange exchange) {
+        URI uri = exchange.getRequest().getURI();
+        return this.userService.saveRole(role).map(saved -> ResponseEntity.created(uri).body(saved));
+    }
+
+    @PostMapping("/role/addtouser")
+    public Mono<ResponseEntity<Void>> addRoleToUser(@RequestBody RoleToUserForm form) {
+        return this.userService.addRoleToUser(form.getUsername(), form.getRoleName())
+                .then(Mono.just(ResponseEntity.ok().<Void>build()))
+                .onErrorMap(IllegalArgumentException.class, e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+
+    @PostMapping("/role/assignments")
+    public Mono<RoleAssignmentResult> assignRoles(@RequestBody RoleAssignmentRequest request) {
+        return this.userService.assignRoles(request);
+    }
+
+    //Cada refresh_token se puede usar una sola vez, igual que en la versión servlet (y compartiendo revoked_tokens)
+    @GetMapping("/token/refresh")
+    public Mono<Void> refreshToken(ServerWebExchange exchange) {
+        String authorizationHeader = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authorizationHeader == null || !authorizationHeader.startsWith(BEARER)) {
+            return this.tokenResponses.writeError(exchange.getResponse(), HttpStatus.FORBIDDEN, "Refresh Token is missing");
+        }
+        return this.tokenService.verifyRefreshToken(authorizationHeader.substring(BEARER.length()))
+                .flatMap(decodedJWT -> (decodedJWT.getId() == null
+                        ? Mono.just(false)
+                        : this.revokedTokens.revoke(decodedJWT.getId(), decodedJWT.getExpiresAt()))
+                        .flatMap(revokedNow -> revokedNow
+                                ? this.userService.getUserCredentials(decodedJWT.getSubject())
+                                .switchIfEmpty(Mono.error(() -> new IllegalStateException("User not found")))
+                                : Mono.<UserCredentials>error(new IllegalStateException("The refresh token has already been used or revoked"))))
+                .flatMap(credentials -> {
+                    String issuer = exchange.getRequest().getURI().toString();
+                    String accessToken = this.tokenService.createAccessToken(credentials.getUsername(), credentials.getRoles(), issuer);
+                    String refreshToken = this.tokenService.createRefreshToken(credentials.getUsername(), issuer);
+                    return this.tokenResponses.writeTokens(exchange.getResponse(), accessToken, refreshToken);
+                })
+                .onErrorResume(e -> e instanceof JWTVerificationException || e instanceof IllegalStateException,
+                        e -> this.tokenResponses.writeError(exchange.getResponse(), HttpStatus.FORBIDDEN, e.getMessage()));
+    }
+
+    /**
+     * Revoca el access_token de la solicitud y, si se envía, también el refresh_token (solo el de su dueño).
+     */
+    @PostMapping("/logout")
+    public Mono<ResponseEntity<Void>> logout(ServerWebExchange exchange, @RequestBody(required = false) Mono<LogoutRequest> body) {
+        String authorizationHeader = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        return this.tokenService.verifyAccessToken(authorizationHeader.substring(BEARER.length()))
+                .flatMap(accessToken -> this.revokeToken(accessToken)
+                        .then(body.flatMap(logoutRequest -> logoutRequest.getRefreshToken() == null
+                                ? Mono.just(ResponseEntity.noContent().<Void>build())
+                                : this.tokenService.verifyRefreshToken(logoutRequest.getRefreshToken())
+                                .flatMap(refreshToken -> refreshToken.getSubject().equals(accessToken.getSubject())
+                                        ? this.revokeToken(refreshToken).thenReturn(ResponseEntity.noContent().<Void>build())
+                                        : Mono.just(ResponseEntity.status(HttpStatus.FORBIDDEN).<Void>build()))
+                                .onErrorReturn(JWTVerificationException.class, ResponseEntity.status(HttpStatus.FORBIDDEN).build())))
+                        .defaultIfEmpty(ResponseEntity.noContent().build()));
+    }
+
+    private Mono<Boolean> revokeToken(DecodedJWT token) {
+        return token.getId() == null ? Mono.just(false) : this.revokedTokens.revoke(token.getId(), token.getExpiresAt());
+    }
+
+    private static String eTag(long version) {
+        return "\"v" + version + "\"";
+    }
+
+}
+
+@Data
+class RoleToUserForm {
+    private String username;
+    private String roleName;
+}
+
+@Data
+class LogoutRequest {
+    @JsonProperty("refresh_token")
+    private String refreshToken;
+}
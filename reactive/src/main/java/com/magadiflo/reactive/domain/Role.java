@@ -0,0 +1,23 @@
+package com.magadiflo.reactive.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("roles")
+public class Role {
+
+    @Id
+    private Long id;
+    private String name;
+    //Posición del rol en la máscara de bits del claim "rm" (ver RoleMasks), igual que en la versión servlet
+    @Column("bit_index")
+    private Integer bitIndex;
+
+}
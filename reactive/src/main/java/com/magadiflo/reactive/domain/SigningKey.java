@@ -0,0 +1,38 @@
+package com.magadiflo.reactive.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Claves RSA de la tabla signing_keys, compartidas con la aplicación servlet: un token firmado
+ * por una se verifica en la otra. Base64 (X.509 la pública, PKCS#8 la privada).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("signing_keys")
+public class SigningKey {
+
+    @Id
+    private String kid;
+    @Column("public_key")
+    private String publicKey;
+    @Column("private_key")
+    private String privateKey;
+    //datetime(6) sin zona: Hibernate guarda el Instant en la zona horaria de la JVM, aquí se lee igual
+    @Column("created_at")
+    private LocalDateTime createdAt;
+
+    public Instant createdAtInstant() {
+        return this.createdAt.atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.magadiflo.reactive.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * La misma tabla users de la aplicación servlet. R2DBC no maneja relaciones: los roles
+ * se cargan aparte (UserRoleRepository) y se completan aquí, así el JSON es el mismo que el de la versión servlet.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("users")
+public class User {
+
+    @Id
+    private Long id;
+    private String name;
+    private String username;
+    private String password;
+
+    @Transient
+    private List<Role> roles = new ArrayList<>();
+
+    public User(Long id, String name, String username, String password) {
+        this(id, name, username, password, new ArrayList<>());
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.magadiflo.reactive.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RoleAssignment {
+
+    private String username;
+    private String roleName;
+
+}
@@ -0,0 +1,24 @@
+package com.magadiflo.reactive.dto;
+
+import com.magadiflo.reactive.domain.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Página de usuarios para la paginación por cursor (keyset).
+ * nextCursor es el id del último usuario de la página, el cliente lo envía
+ * en el parámetro "after" para obtener la siguiente página.
+ * Si es null, ya no hay más usuarios.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserPage {
+
+    private List<User> users;
+    private Long nextCursor;
+
+}
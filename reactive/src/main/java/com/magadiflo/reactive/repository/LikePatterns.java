@@ -0,0 +1,31 @@
+package com.magadiflo.reactive.repository;
+
+/**
+ * Patrones LIKE armados con lo que escribe el usuario: un % o _ se busca literalmente.
+ * Es la misma clase que en la versión servlet (los dos proyectos no comparten código). El carácter de
+ * escape es '!' y no '\': en MySQL la barra invertida también escapa dentro de los literales de texto,
+ * así "escape '\'" queda sin cerrar y la consulta falla.
+ */
+final class LikePatterns {
+
+    static final char ESCAPE = '!';
+
+    //Se agrega después del like, por ejemplo "u.username like :prefix" + ESCAPE_CLAUSE
+    static final String ESCAPE_CLAUSE = " escape '" + ESCAPE + "'";
+
+    private LikePatterns() {
+    }
+
+    //"a_b" -> "a!_b%"
+    static String startsWith(String prefix) {
+        StringBuilder pattern = new StringBuilder(prefix.length() + 1);
+        for (char c : prefix.toCharArray()) {
+            if (c == '%' || c == '_' || c == ESCAPE) {
+                pattern.append(ESCAPE);
+            }
+            pattern.append(c);
+        }
+        return pattern.append('%').toString();
+    }
+
+}
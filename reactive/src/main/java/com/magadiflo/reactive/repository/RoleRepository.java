@@ -0,0 +1,27 @@
+package com.magadiflo.reactive.repository;
+
+import com.magadiflo.reactive.domain.Role;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface RoleRepository extends ReactiveCrudRepository<Role, Long> {
+
+    Mono<Role> findByName(String name);
+
+    Flux<Role> findByNameIn(Collection<String> names);
+
+    @Query("select * from roles order by id")
+    Flux<Role> findAllOrderById();
+
+    @Query("select * from roles where bit_index is not null")
+    Flux<Role> findWithBitIndex();
+
+    //-1 si todavía no hay roles: un max() nulo no llega como valor en R2DBC
+    @Query("select coalesce(max(bit_index), -1) from roles")
+    Mono<Integer> findMaxBitIndex();
+
+}
@@ -0,0 +1,86 @@
+package com.magadiflo.reactive.repository;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ids para users y roles desde las mismas tablas users_seq y roles_seq que usa Hibernate en la versión servlet,
+ * con la misma regla que su optimizador "pooled" (allocationSize = 50): al leer next_val = h (y dejarlo en h + 50)
+ * se reservan los ids h - 49 .. h. Así ambas versiones pueden escribir en la misma BD sin repetir ids.
+ * Si dos solicitudes reservan un bloque a la vez, cada una usa el suyo (se pierden algunos ids, no se repiten).
+ */
+@Component
+public class SequenceIdAllocator {
+
+    public static final String USERS_SEQUENCE = "users_seq";
+    public static final String ROLES_SEQUENCE = "roles_seq";
+
+    private static final int ALLOCATION_SIZE = 50;
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    //REQUIRES_NEW: la fila de la secuencia queda bloqueada solo mientras se reserva el bloque,
+    //no durante toda la transacción que pidió el id
+    public SequenceIdAllocator(DatabaseClient databaseClient, ReactiveTransactionManager transactionManager) {
+        this.databaseClient = databaseClient;
+        DefaultTransactionDefinition definition = new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionalOperator = TransactionalOperator.create(transactionManager, definition);
+    }
+
+    public Mono<Long> nextId(String sequence) {
+        return Mono.defer(() -> {
+            Block block = this.blocks.get(sequence);
+            long id = block == null ? -1 : block.next();
+            if (id > 0) {
+                return Mono.just(id);
+            }
+            return this.reserve(sequence).map(reserved -> {
+                this.blocks.put(sequence, reserved);
+                return reserved.next();
+            });
+        });
+    }
+
+    //El select ... for update es el bloqueo entre instancias (y con la versión servlet)
+    private Mono<Block> reserve(String sequence) {
+        Mono<Long> hi = this.databaseClient.sql("select next_val from " + sequence + " for update")
+                .map((row, metadata) -> row.get(0, Long.class))
+                .one()
+                .flatMap(value -> this.databaseClient.sql("update " + sequence + " set next_val = :next")
+                        .bind("next", value + ALLOCATION_SIZE)
+                        .fetch().rowsUpdated()
+                        .thenReturn(value));
+        return this.transactionalOperator.transactional(hi)
+                //Tabla recién creada (next_val = 1): el primer bloque completo empieza en el siguiente valor
+                .flatMap(value -> value < ALLOCATION_SIZE ? this.reserve(sequence) : Mono.just(new Block(value)));
+    }
+
+    private static class Block {
+
+        private final AtomicLong next;
+        private final long max;
+
+        Block(long hi) {
+            this.next = new AtomicLong(hi - ALLOCATION_SIZE + 1);
+            this.max = hi;
+        }
+
+        //-1 cuando el bloque se agotó
+        long next() {
+            long id = this.next.getAndIncrement();
+            return id <= this.max ? id : -1;
+        }
+    }
+
+}
@@ -0,0 +1,13 @@
+package com.magadiflo.reactive.repository;
+
+import com.magadiflo.reactive.domain.SigningKey;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+
+public interface SigningKeyRepository extends ReactiveCrudRepository<SigningKey, String> {
+
+    @Query("select * from signing_keys order by created_at desc")
+    Flux<SigningKey> findAllNewestFirst();
+
+}
@@ -0,0 +1,25 @@
+package com.magadiflo.reactive.repository;
+
+import com.magadiflo.reactive.domain.User;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface UserRepository extends ReactiveCrudRepository<User, Long> {
+
+    //Índice único uk_users_username
+    Mono<User> findByUsername(String username);
+
+    //Paginación por cursor (keyset), igual que IUserRepository.findPageIds
+    @Query("select * from users where id > :afterId order by id limit :limit")
+    Flux<User> findPage(long afterId, int limit);
+
+    Flux<User> findByUsernameIn(Collection<String> usernames);
+
+    @Query("select * from users order by id")
+    Flux<User> findAllOrderById();
+
+}
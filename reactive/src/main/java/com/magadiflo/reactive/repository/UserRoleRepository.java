@@ -0,0 +1,91 @@
+package com.magadiflo.reactive.repository;
+
+import com.magadiflo.reactive.domain.Role;
+import com.magadiflo.reactive.dto.UserCredentials;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Tabla intermedia users_roles, con SQL directo: R2DBC no maneja la relación @ManyToMany de JPA.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserRoleRepository {
+
+    private final DatabaseClient databaseClient;
+
+    /**
+     * Igual que IUserRepository.findCredentialsByUsername: usuario, contraseña y nombres de roles
+     * en una sola consulta (una fila por rol). Vacío si el usuario no existe.
+     */
+    public Mono<UserCredentials> findCredentials(String username) {
+        return this.databaseClient.sql("select u.username, u.password, r.name from users u " +
+                        "left join users_roles ur on ur.user_id = u.id left join roles r on r.id = ur.roles_id " +
+                        "where u.username = :username")
+                .bind("username", username)
+                .map((row, metadata) -> new String[]{row.get(0, String.class), row.get(1, String.class), row.get(2, String.class)})
+                .all()
+                .collectList()
+                .flatMap(rows -> {
+                    if (rows.isEmpty()) {
+                        return Mono.empty();
+                    }
+                    List<String> roles = new ArrayList<>(rows.size());
+                    for (String[] row : rows) {
+                        if (row[2] != null) { //left join: un usuario sin roles devuelve una fila con el rol en null
+                            roles.add(row[2]);
+                        }
+                    }
+                    return Mono.just(new UserCredentials(rows.get(0)[0], rows.get(0)[1], roles));
+                });
+    }
+
+    //Roles de varios usuarios en una sola consulta, para completar User.roles de una página
+    public Flux<UserRoleRow> findRoles(Collection<Long> userIds) {
+        return this.databaseClient.sql("select ur.user_id, r.id, r.name, r.bit_index from users_roles ur " +
+                        "join roles r on r.id = ur.roles_id where ur.user_id in (:userIds)")
+                .bind("userIds", userIds)
+                .map((row, metadata) -> new UserRoleRow(row.get(0, Long.class),
+                        new Role(row.get(1, Long.class), row.get(2, String.class), row.get(3, Integer.class))))
+                .all();
+    }
+
+    //Pares (user_id, roles_id) ya asignados, para que la asignación masiva solo inserte lo que falta
+    public Flux<List<Long>> findPairs(Collection<Long> userIds) {
+        return this.databaseClient.sql("select user_id, roles_id from users_roles where user_id in (:userIds)")
+                .bind("userIds", userIds)
+                .map((row, metadata) -> Arrays.asList(row.get(0, Long.class), row.get(1, Long.class)))
+                .all();
+    }
+
+    public Mono<Integer> insert(long userId, long roleId) {
+        return this.databaseClient.sql("insert into users_roles (user_id, roles_id) values (:userId, :roleId)")
+                .bind("userId", userId)
+                .bind("roleId", roleId)
+                .fetch().rowsUpdated();
+    }
+
+    public Mono<Integer> delete(long userId, long roleId) {
+        return this.databaseClient.sql("delete from users_roles where user_id = :userId and roles_id = :roleId")
+                .bind("userId", userId)
+                .bind("roleId", roleId)
+                .fetch().rowsUpdated();
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class UserRoleRow {
+        private final Long userId;
+        private final Role role;
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.magadiflo.reactive.repository;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+/**
+ * La búsqueda por prefijo de la versión servlet (IUserSearchRepositoryImpl), en SQL: la consulta se arma
+ * según los filtros presentes y cada página es un rango del índice del campo buscado.
+ * Sin lower(): username y name no distinguen mayúsculas por su collation (en H2, varchar_ignorecase).
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserSearchRepository {
+
+    private final DatabaseClient databaseClient;
+
+    public Flux<Long> searchIds(SearchField field, String prefix, Long roleId, SearchCursor after, int limit) {
+        String column = "u." + field.getColumn();
+        StringBuilder sql = new StringBuilder("select u.id from users u where ")
+                .append(column).append(" like :prefix").append(LikePatterns.ESCAPE_CLAUSE);
+        if (roleId != null) {
+            sql.append(" and exists (select 1 from users_roles ur where ur.user_id = u.id and ur.roles_id = :roleId)");
+        }
+        if (after != null) {
+            sql.append(" and (").append(column).append(" > :afterValue or (")
+                    .append(column).append(" = :afterValue and u.id > :afterId))");
+        }
+        sql.append(" order by ").append(column).append(", u.id limit :limit");
+
+        DatabaseClient.GenericExecuteSpec spec = this.databaseClient.sql(sql.toString())
+                .bind("prefix", LikePatterns.startsWith(prefix))
+                .bind("limit", limit);
+        if (roleId != null) {
+            spec = spec.bind("roleId", roleId);
+        }
+        if (after != null) {
+            spec = spec.bind("afterValue", after.getValue()).bind("afterId", after.getId());
+        }
+        return spec.map((row, metadata) -> row.get(0, Long.class)).all();
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public enum SearchField {
+        USERNAME("username"),
+        NAME("name");
+
+        private final String column;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class SearchCursor {
+        private final String value;
+        private final long id;
+    }
+
+}
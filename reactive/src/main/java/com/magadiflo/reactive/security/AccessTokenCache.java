@@ -0,0 +1,106 @@
+package com.magadiflo.reactive.security;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caché de tokens de acceso ya verificados, como AccessTokenCache en la versión servlet:
+ * la autenticación ya construida, indexada por el SHA-256 del token y eliminada cuando vence su claim exp.
+ * Con un acierto no hay nada asíncrono, el Mono se resuelve de inmediato en el mismo hilo.
+ * La revocación se consulta en cada llamada, también cuando el token ya está en caché.
+ */
+@Component
+public class AccessTokenCache {
+
+    private static final long MAX_SIZE = 100_000;
+    private static final long MAX_TTL_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final TokenService tokenService;
+    private final RevokedTokens revokedTokens;
+    private final Cache<String, VerifiedToken> cache;
+
+    public AccessTokenCache(TokenService tokenService, RevokedTokens revokedTokens) {
+        this.tokenService = tokenService;
+        this.revokedTokens = revokedTokens;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(MAX_SIZE)
+                .expireAfter(new TokenExpiry())
+                .build();
+    }
+
+    /**
+     * Termina con JWTVerificationException si el token no es válido o fue revocado.
+     */
+    public Mono<UsernamePasswordAuthenticationToken> getAuthentication(String token) {
+        String key = digest(token);
+        VerifiedToken cached = this.cache.getIfPresent(key);
+        Mono<VerifiedToken> verifiedToken = cached != null
+                ? Mono.just(cached)
+                : this.tokenService.verifyAccessToken(token).map(this::toVerifiedToken).doOnNext(verified -> this.cache.put(key, verified));
+        return verifiedToken.flatMap(verified -> this.revokedTokens.isRevoked(verified.getJti())
+                ? Mono.error(new JWTVerificationException("The token has been revoked"))
+                : Mono.just(verified.getAuthentication()));
+    }
+
+    private VerifiedToken toVerifiedToken(DecodedJWT decodedJWT) {
+        Date expiresAt = decodedJWT.getExpiresAt();
+        return new VerifiedToken(this.tokenService.getAuthentication(decodedJWT), decodedJWT.getId(),
+                expiresAt == null ? Long.MAX_VALUE : expiresAt.getTime());
+    }
+
+    private static String digest(String token) {
+        byte[] hash = SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getEncoder().withoutPadding().encodeToString(hash);
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    static class VerifiedToken {
+        private final UsernamePasswordAuthenticationToken authentication;
+        private final String jti;
+        private final long expiresAtMillis;
+    }
+
+    private static class TokenExpiry implements Expiry<String, VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+            long remainingMillis = value.getExpiresAtMillis() - System.currentTimeMillis();
+            return Math.max(0, Math.min(MAX_TTL_NANOS, TimeUnit.MILLISECONDS.toNanos(remainingMillis)));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+}
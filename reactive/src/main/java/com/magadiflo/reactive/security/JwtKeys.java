@@ -0,0 +1,184 @@
+package com.magadiflo.reactive.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.magadiflo.reactive.domain.SigningKey;
+import com.magadiflo.reactive.repository.SigningKeyRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Las claves de firma de la tabla signing_keys, las mismas de la versión servlet (JwtKeyManager):
+ * se firma con la clave más reciente que ya lleva jwks-max-age publicada y se verifica con la del kid del token.
+ * La rotación y el retiro de claves los sigue haciendo la aplicación servlet; aquí solo se vuelven a leer
+ * cada key-reload-interval o cuando llega un kid desconocido. Si la tabla está vacía (BD embebida) se crea una.
+ */
+@Slf4j
+@Component
+@DependsOnDatabaseInitialization
+public class JwtKeys {
+
+    private static final Duration MIN_RELOAD_INTERVAL = Duration.ofSeconds(5);
+
+    private final SigningKeyRepository signingKeyRepository;
+    private final R2dbcEntityTemplate entityTemplate;
+    private final Duration jwksMaxAge;
+    private final int keySize;
+
+    private volatile KeySet keySet = new KeySet(null, Collections.emptyMap());
+    private volatile Instant lastReload = Instant.EPOCH;
+
+    public JwtKeys(SigningKeyRepository signingKeyRepository, R2dbcEntityTemplate entityTemplate,
+                   @Value("${app.security.jwt.jwks-max-age}") Duration jwksMaxAge,
+                   @Value("${app.security.jwt.key-size}") int keySize) {
+        this.signingKeyRepository = signingKeyRepository;
+        this.entityTemplate = entityTemplate;
+        this.jwksMaxAge = jwksMaxAge;
+        this.keySize = keySize;
+    }
+
+    //Al arrancar (fuera del event loop) sí se puede esperar: sin claves no se puede atender ninguna solicitud
+    @PostConstruct
+    public void init() {
+        this.signingKeyRepository.findAllNewestFirst().collectList()
+                .flatMap(keys -> keys.isEmpty()
+                        ? this.entityTemplate.insert(this.newSigningKey()).then(this.signingKeyRepository.findAllNewestFirst().collectList())
+                        : Mono.just(keys))
+                .doOnNext(this::load)
+                .block();
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.jwt.key-reload-interval}",
+            initialDelayString = "${app.security.jwt.key-reload-interval}")
+    public void scheduledReload() {
+        this.reload().subscribe();
+    }
+
+    public Mono<Void> reload() {
+        return this.signingKeyRepository.findAllNewestFirst().collectList().doOnNext(this::load).then();
+    }
+
+    public ActiveKey getSigningKey() {
+        ActiveKey signingKey = this.keySet.getSigningKey();
+        if (signingKey == null) {
+            throw new IllegalStateException("No signing key available");
+        }
+        return signingKey;
+    }
+
+    /**
+     * Verificador de la clave con ese kid. Si no se conoce (la versión servlet acaba de rotar)
+     * se recargan las claves, como máximo una vez cada MIN_RELOAD_INTERVAL; vacío si sigue sin existir.
+     */
+    public Mono<JWTVerifier> getVerifier(String kid) {
+        if (kid == null) {
+            return Mono.empty();
+        }
+        JWTVerifier verifier = this.keySet.getVerifiers().get(kid);
+        if (verifier != null) {
+            return Mono.just(verifier);
+        }
+        Instant now = Instant.now();
+        if (this.lastReload.plus(MIN_RELOAD_INTERVAL).isAfter(now)) {
+            return Mono.empty();
+        }
+        this.lastReload = now;
+        return this.reload().then(Mono.fromSupplier(() -> this.keySet.getVerifiers().get(kid)));
+    }
+
+    //keys viene ordenado de la más reciente a la más antigua
+    private void load(List<SigningKey> keys) {
+        Instant now = Instant.now();
+        ActiveKey signingKey = null;
+        Map<String, JWTVerifier> verifiers = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            SigningKey key = keys.get(i);
+            RSAPublicKey publicKey = decodePublicKey(key.getPublicKey());
+            verifiers.put(key.getKid(), JWT.require(Algorithm.RSA256(publicKey, null)).build());
+            boolean published = !key.createdAtInstant().plus(this.jwksMaxAge).isAfter(now);
+            if (signingKey == null && (published || i == keys.size() - 1)) {
+                signingKey = new ActiveKey(key.getKid(),
+                        Algorithm.RSA256(publicKey, decodePrivateKey(key.getPrivateKey())));
+            }
+        }
+        this.keySet = new KeySet(signingKey, Collections.unmodifiableMap(verifiers));
+        this.lastReload = now;
+        log.debug("{} signing keys loaded", keys.size());
+    }
+
+    private SigningKey newSigningKey() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(this.keySize);
+            KeyPair keyPair = generator.generateKeyPair();
+            Base64.Encoder encoder = Base64.getEncoder();
+            log.info("No signing keys found, generating one");
+            return new SigningKey(UUID.randomUUID().toString(),
+                    encoder.encodeToString(keyPair.getPublic().getEncoded()),
+                    encoder.encodeToString(keyPair.getPrivate().getEncoded()),
+                    LocalDateTime.now());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to generate a signing key", e);
+        }
+    }
+
+    private static RSAPublicKey decodePublicKey(String encoded) {
+        try {
+            return (RSAPublicKey) KeyFactory.getInstance("RSA")
+                    .generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(encoded)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Invalid public key", e);
+        }
+    }
+
+    private static RSAPrivateKey decodePrivateKey(String encoded) {
+        try {
+            return (RSAPrivateKey) KeyFactory.getInstance("RSA")
+                    .generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(encoded)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Invalid private key", e);
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class ActiveKey {
+        private final String kid;
+        private final Algorithm algorithm;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class KeySet {
+        private final ActiveKey signingKey;
+        private final Map<String, JWTVerifier> verifiers;
+    }
+
+}
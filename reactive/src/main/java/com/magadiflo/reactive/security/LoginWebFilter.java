@@ -0,0 +1,97 @@
+package com.magadiflo.reactive.security;
+
+import com.magadiflo.reactive.dto.UserCredentials;
+import com.magadiflo.reactive.service.UserService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatcher;
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatchers;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * POST /api/login con username y password como formulario, igual que CustomAuthenticationFilter:
+ * responde con el access_token y el refresh_token en JSON. Mientras BCrypt corre en PasswordHashing
+ * el hilo del event loop sigue atendiendo otras conexiones.
+ * Lo crea SecurityConfig dentro de la cadena de seguridad, igual que TokenAuthorizationWebFilter.
+ */
+@Slf4j
+public class LoginWebFilter implements WebFilter {
+
+    private static final ServerWebExchangeMatcher LOGIN = ServerWebExchangeMatchers.pathMatchers(HttpMethod.POST, "/api/login");
+
+    private final UserService userService;
+    private final PasswordHashing passwordHashing;
+    private final TokenService tokenService;
+    private final TokenResponses tokenResponses;
+    //Para un usuario que no existe también se compara contra un hash, así el tiempo de respuesta
+    //no revela qué usernames existen (lo mismo que hace DaoAuthenticationProvider)
+    private final String dummyHash;
+
+    public LoginWebFilter(UserService userService, PasswordHashing passwordHashing, TokenService tokenService,
+                          TokenResponses tokenResponses, PasswordEncoder passwordEncoder) {
+        this.userService = userService;
+        this.passwordHashing = passwordHashing;
+        this.tokenService = tokenService;
+        this.tokenResponses = tokenResponses;
+        this.dummyHash = passwordEncoder.encode("userNotFoundPassword");
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        return LOGIN.matches(exchange)
+                .flatMap(match -> match.isMatch() ? this.login(exchange) : chain.filter(exchange));
+    }
+
+    private Mono<Void> login(ServerWebExchange exchange) {
+        return exchange.getFormData().flatMap(form -> {
+            String username = form.getFirst("username");
+            String password = form.getFirst("password");
+            if (username == null || password == null) {
+                return this.badCredentials(exchange);
+            }
+            return this.userService.getUserCredentials(username)
+                    .map(credentials -> new Candidate(credentials, credentials.getPassword()))
+                    .defaultIfEmpty(new Candidate(null, this.dummyHash))
+                    .flatMap(candidate -> this.passwordHashing.matches(password, candidate.hash)
+                            .flatMap(matches -> matches && candidate.credentials != null
+                                    ? this.writeTokens(exchange, candidate.credentials)
+                                    : this.badCredentials(exchange)));
+        }).onErrorResume(RejectedExecutionException.class, e -> {
+            log.warn("Login rejected, the password hashing queue is full");
+            exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+            return this.tokenResponses.writeError(exchange.getResponse(), HttpStatus.SERVICE_UNAVAILABLE,
+                    "Too many login attempts in progress, try again later");
+        });
+    }
+
+    private Mono<Void> writeTokens(ServerWebExchange exchange, UserCredentials credentials) {
+        String issuer = exchange.getRequest().getURI().toString();
+        String accessToken = this.tokenService.createAccessToken(credentials.getUsername(), credentials.getRoles(), issuer);
+        String refreshToken = this.tokenService.createRefreshToken(credentials.getUsername(), issuer);
+        return this.tokenResponses.writeTokens(exchange.getResponse(), accessToken, refreshToken);
+    }
+
+    private Mono<Void> badCredentials(ServerWebExchange exchange) {
+        return this.tokenResponses.writeError(exchange.getResponse(), HttpStatus.UNAUTHORIZED, "Bad credentials");
+    }
+
+    private static class Candidate {
+
+        private final UserCredentials credentials;
+        private final String hash;
+
+        Candidate(UserCredentials credentials, String hash) {
+            this.credentials = credentials;
+            this.hash = hash;
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.magadiflo.reactive.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * BCrypt (unos 100 ms de CPU) nunca en el event loop de Netty: bloquearía a todas las conexiones de ese hilo.
+ * Se ejecuta en un Scheduler acotado, como LoginExecutor en la versión servlet: tantos hilos como núcleos
+ * y una cola de queue-capacity tareas. Con la cola llena la tarea se rechaza (RejectedExecutionException)
+ * y LoginWebFilter responde 503 en lugar de dejar crecer la espera sin límite.
+ */
+@Component
+public class PasswordHashing {
+
+    private final PasswordEncoder passwordEncoder;
+    private final Scheduler scheduler;
+
+    public PasswordHashing(PasswordEncoder passwordEncoder,
+                           @Value("${app.security.login.queue-capacity}") int queueCapacity) {
+        this.passwordEncoder = passwordEncoder;
+        this.scheduler = Schedulers.newBoundedElastic(Runtime.getRuntime().availableProcessors(), queueCapacity, "bcrypt");
+    }
+
+    public Mono<Boolean> matches(CharSequence rawPassword, String encodedPassword) {
+        return Mono.fromCallable(() -> this.passwordEncoder.matches(rawPassword, encodedPassword))
+                .subscribeOn(this.scheduler);
+    }
+
+    public Mono<String> encode(CharSequence rawPassword) {
+        return Mono.fromCallable(() -> this.passwordEncoder.encode(rawPassword))
+                .subscribeOn(this.scheduler);
+    }
+
+    @PreDestroy
+    public void dispose() {
+        this.scheduler.dispose();
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.magadiflo.reactive.security;
+
+import com.magadiflo.reactive.service.ChangeLog;
+import com.magadiflo.reactive.service.ChangeLog.EntityType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tokens revocados (logout) y refresh_token ya usados, de la misma tabla revoked_tokens que RevocationStore
+ * en la versión servlet: una revocación hecha en cualquiera de las dos se respeta en la otra.
+ * La consulta por solicitud es un ConcurrentHashMap en memoria; las revocaciones de otras instancias
+ * se traen cada sync-interval. Sin filtro de Bloom: con la cantidad de tokens revocados que manejamos
+ * el mapa ya responde en O(1).
+ * Cada revocación agrega su evento a change_log en la misma transacción, así las instancias servlet
+ * la aplican sin esperar a su propia sincronización (ver ChangeLogPoller en la versión servlet).
+ */
+@Slf4j
+@Component
+public class RevokedTokens {
+
+    private static final Duration SYNC_MARGIN = Duration.ofMinutes(1);
+
+    private final DatabaseClient databaseClient;
+    private final ChangeLog changeLog;
+    private final TransactionalOperator transactionalOperator;
+    private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<>();
+
+    private volatile LocalDateTime lastSync = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    public RevokedTokens(DatabaseClient databaseClient, ChangeLog changeLog, TransactionalOperator transactionalOperator) {
+        this.databaseClient = databaseClient;
+        this.changeLog = changeLog;
+        this.transactionalOperator = transactionalOperator;
+    }
+
+    public boolean isRevoked(String jti) {
+        if (jti == null) {
+            return false;
+        }
+        Long expiresAt = this.revoked.get(jti);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    /**
+     * true si se revocó ahora, false si ya estaba revocado (también por otra instancia o por la versión servlet):
+     * así un refresh_token solo se puede usar una vez.
+     */
+    public Mono<Boolean> revoke(String jti, Date expiresAt) {
+        //Las columnas son timestamp sin zona: se guardan en la zona de la JVM, igual que Hibernate
+        Mono<Boolean> insert = this.databaseClient.sql("insert into revoked_tokens (jti, expires_at, revoked_at) values (:jti, :expiresAt, :revokedAt)")
+                .bind("jti", jti)
+                .bind("expiresAt", LocalDateTime.ofInstant(expiresAt.toInstant(), ZoneId.systemDefault()))
+                .bind("revokedAt", LocalDateTime.now())
+                .fetch().rowsUpdated()
+                .then(this.changeLog.append(EntityType.REVOKED_TOKEN, jti))
+                .thenReturn(true);
+        return this.transactionalOperator.transactional(insert)
+                .onErrorReturn(DataIntegrityViolationException.class, false)
+                .doOnNext(revokedNow -> this.revoked.put(jti, expiresAt.getTime()));
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.revocation.sync-interval}")
+    public void sync() {
+        LocalDateTime now = LocalDateTime.now();
+        this.databaseClient.sql("select jti, expires_at from revoked_tokens where revoked_at >= :since")
+                .bind("since", this.lastSync.minus(SYNC_MARGIN))
+                .map((row, metadata) -> new Object[]{row.get(0, String.class), row.get(1, LocalDateTime.class)})
+                .all()
+                .doOnNext(row -> this.revoked.put((String) row[0],
+                        ((LocalDateTime) row[1]).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()))
+                .then(Mono.fromRunnable(() -> {
+                    this.lastSync = now;
+                    long currentMillis = System.currentTimeMillis();
+                    this.revoked.values().removeIf(expiresAt -> expiresAt <= currentMillis);
+                }))
+                .subscribe(null, e -> log.warn("Error syncing revoked tokens: {}", e.getMessage()));
+    }
+
+}
@@ -0,0 +1,154 @@
+package com.magadiflo.reactive.security;
+
+import com.magadiflo.reactive.domain.Role;
+import com.magadiflo.reactive.repository.RoleRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * La máscara de bits de roles del claim "rm", igual que RoleRegistry en la versión servlet: cada máscara
+ * se traduce una sola vez a su lista de authorities y se comparte entre todas las solicitudes.
+ * Un bit desconocido (rol recién creado en otra instancia) dispara una recarga en segundo plano,
+ * sin hacer esperar a la solicitud.
+ */
+@Slf4j
+@Component
+@DependsOnDatabaseInitialization
+public class RoleMasks {
+
+    private static final int MAX_CACHED_MASKS = 10_000;
+    private static final Duration MIN_RELOAD_INTERVAL = Duration.ofSeconds(5);
+
+    private final RoleRepository roleRepository;
+
+    private volatile Registry registry = new Registry(Collections.emptyList());
+    private volatile Instant lastReload = Instant.EPOCH;
+
+    public RoleMasks(RoleRepository roleRepository) {
+        this.roleRepository = roleRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.reload().block();
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.roles.reload-interval}",
+            initialDelayString = "${app.security.roles.reload-interval}")
+    public void scheduledReload() {
+        this.reload().subscribe();
+    }
+
+    public Mono<Void> reload() {
+        return this.roleRepository.findWithBitIndex().collectList()
+                .doOnNext(roles -> {
+                    this.registry = new Registry(roles);
+                    this.lastReload = Instant.now();
+                })
+                .then();
+    }
+
+    public BitSet toMask(Collection<String> roleNames) {
+        BitSet mask = new BitSet();
+        for (String roleName : roleNames) {
+            Integer bitIndex = this.registry.bitByName.get(roleName);
+            if (bitIndex == null) {
+                log.warn("Role {} has no bit index, it is left out of the token", roleName);
+                this.reloadIfStale();
+                continue;
+            }
+            mask.set(bitIndex);
+        }
+        return mask;
+    }
+
+    public static String encode(BitSet mask) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(mask.toByteArray());
+    }
+
+    public List<GrantedAuthority> getAuthorities(long mask) {
+        List<GrantedAuthority> authorities = this.registry.byLongMask.get(mask);
+        return authorities != null ? authorities : this.build(BitSet.valueOf(new long[]{mask}), mask, null);
+    }
+
+    public List<GrantedAuthority> getAuthorities(String encodedMask) {
+        List<GrantedAuthority> authorities = this.registry.byEncodedMask.get(encodedMask);
+        return authorities != null
+                ? authorities
+                : this.build(BitSet.valueOf(Base64.getUrlDecoder().decode(encodedMask)), null, encodedMask);
+    }
+
+    private List<GrantedAuthority> build(BitSet mask, Long longKey, String encodedKey) {
+        Registry current = this.registry;
+        List<GrantedAuthority> authorities = new ArrayList<>(mask.cardinality());
+        boolean complete = true;
+        for (int bit = mask.nextSetBit(0); bit >= 0; bit = mask.nextSetBit(bit + 1)) {
+            GrantedAuthority authority = bit < current.authorityByBit.length ? current.authorityByBit[bit] : null;
+            if (authority == null) {
+                complete = false;
+            } else {
+                authorities.add(authority);
+            }
+        }
+        authorities = Collections.unmodifiableList(authorities);
+        if (!complete) {
+            log.warn("Unknown role bits in token mask {}", mask);
+            this.reloadIfStale();
+        } else if (current.byLongMask.size() + current.byEncodedMask.size() < MAX_CACHED_MASKS) {
+            //Solo se guarda si todos los bits son conocidos, así se vuelve a intentar cuando el rol exista
+            if (longKey != null) {
+                current.byLongMask.putIfAbsent(longKey, authorities);
+            } else {
+                current.byEncodedMask.putIfAbsent(encodedKey, authorities);
+            }
+        }
+        return authorities;
+    }
+
+    private void reloadIfStale() {
+        Instant now = Instant.now();
+        if (this.lastReload.plus(MIN_RELOAD_INTERVAL).isBefore(now)) {
+            this.lastReload = now;
+            this.reload().subscribe();
+        }
+    }
+
+    private static class Registry {
+
+        private final Map<String, Integer> bitByName = new HashMap<>();
+        private final GrantedAuthority[] authorityByBit;
+        private final ConcurrentHashMap<Long, List<GrantedAuthority>> byLongMask = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, List<GrantedAuthority>> byEncodedMask = new ConcurrentHashMap<>();
+
+        Registry(List<Role> roles) {
+            int maxBit = -1;
+            for (Role role : roles) {
+                maxBit = Math.max(maxBit, role.getBitIndex());
+            }
+            this.authorityByBit = new GrantedAuthority[maxBit + 1];
+            for (Role role : roles) {
+                this.bitByName.put(role.getName(), role.getBitIndex());
+                this.authorityByBit[role.getBitIndex()] = new SimpleGrantedAuthority(role.getName());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.magadiflo.reactive.security;
+
+import com.magadiflo.reactive.service.UserService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import reactor.core.publisher.Mono;
+
+/**
+ * Las mismas reglas que la versión servlet: sin sesión (cada solicitud trae su token),
+ * login y refresh públicos, listados para ROLE_USER y escrituras para ROLE_ADMIN.
+ */
+@Configuration
+@EnableWebFluxSecurity
+public class SecurityConfig {
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http, UserService userService,
+                                                         PasswordHashing passwordHashing, TokenService tokenService,
+                                                         TokenResponses tokenResponses, AccessTokenCache accessTokenCache,
+                                                         PasswordEncoder passwordEncoder) {
+        LoginWebFilter loginFilter = new LoginWebFilter(userService, passwordHashing, tokenService, tokenResponses, passwordEncoder);
+        TokenAuthorizationWebFilter authorizationFilter = new TokenAuthorizationWebFilter(accessTokenCache, tokenResponses);
+        return http
+                .csrf().disable()
+                .httpBasic().disable()
+                .formLogin().disable()
+                .logout().disable()
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                //Sin token, o sin el rol necesario: 403, igual que la versión servlet
+                .exceptionHandling()
+                .authenticationEntryPoint((exchange, e) -> Mono.fromRunnable(() -> exchange.getResponse().setStatusCode(HttpStatus.FORBIDDEN)))
+                .accessDeniedHandler((exchange, e) -> Mono.fromRunnable(() -> exchange.getResponse().setStatusCode(HttpStatus.FORBIDDEN)))
+                .and()
+                .authorizeExchange()
+                .pathMatchers("/api/login", "/api/token/refresh").permitAll()
+                .pathMatchers(HttpMethod.GET, "/api/users/**", "/api/roles/**").hasAnyAuthority("ROLE_USER")
+                .pathMatchers(HttpMethod.POST, "/api/user/save/**", "/api/role/assignments/**").hasAnyAuthority("ROLE_ADMIN")
+                .anyExchange().authenticated()
+                .and()
+                .addFilterAt(loginFilter, SecurityWebFiltersOrder.FORM_LOGIN)
+                .addFilterAt(authorizationFilter, SecurityWebFiltersOrder.AUTHENTICATION)
+                .build();
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.magadiflo.reactive.security;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * El equivalente de CustomAuthorizationFilter: toma el Bearer token, lo resuelve con AccessTokenCache
+ * y deja la autenticación en el contexto de Reactor para el resto de la cadena.
+ * Sin token sigue de largo (anónimo) y las reglas de SecurityConfig deciden; con un token inválido responde 403.
+ * Sin @Component: WebFlux registraría cualquier WebFilter que sea un bean como filtro global, fuera de la cadena de seguridad.
+ */
+public class TokenAuthorizationWebFilter implements WebFilter {
+
+    private static final String BEARER = "Bearer ";
+
+    private final AccessTokenCache accessTokenCache;
+    private final TokenResponses tokenResponses;
+
+    public TokenAuthorizationWebFilter(AccessTokenCache accessTokenCache, TokenResponses tokenResponses) {
+        this.accessTokenCache = accessTokenCache;
+        this.tokenResponses = tokenResponses;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        String authorizationHeader = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        //El refresh token no es un access token: /api/token/refresh lo verifica por su cuenta
+        if (path.equals("/api/login") || path.equals("/api/token/refresh")
+                || authorizationHeader == null || !authorizationHeader.startsWith(BEARER)) {
+            return chain.filter(exchange);
+        }
+        return this.accessTokenCache.getAuthentication(authorizationHeader.substring(BEARER.length()))
+                //Solo los errores del token: los del resto de la cadena (el controlador) no se convierten en 403
+                .onErrorResume(JWTVerificationException.class, e -> this.tokenResponses
+                        .writeError(exchange.getResponse(), HttpStatus.FORBIDDEN, e.getMessage())
+                        .then(Mono.empty()))
+                .flatMap(authentication -> chain.filter(exchange)
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication)));
+    }
+
+}
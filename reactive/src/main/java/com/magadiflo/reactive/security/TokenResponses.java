@@ -0,0 +1,61 @@
+package com.magadiflo.reactive.security;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Las mismas respuestas JSON que TokenResponseWriter en la versión servlet ({"access_token", "refresh_token"}
+ * y {"error_message"} más la cabecera error), escritas con el JsonFactory compartido directamente en un DataBuffer.
+ */
+@Component
+public class TokenResponses {
+
+    private final JsonFactory jsonFactory;
+
+    public TokenResponses(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    public Mono<Void> writeTokens(ServerHttpResponse response, String accessToken, String refreshToken) {
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return response.writeWith(Mono.fromSupplier(() -> this.write(response, generator -> {
+            generator.writeStringField("access_token", accessToken);
+            generator.writeStringField("refresh_token", refreshToken);
+        })));
+    }
+
+    public Mono<Void> writeError(ServerHttpResponse response, HttpStatus status, String message) {
+        response.setStatusCode(status);
+        response.getHeaders().set("error", message);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return response.writeWith(Mono.fromSupplier(() -> this.write(response,
+                generator -> generator.writeStringField("error_message", message))));
+    }
+
+    private DataBuffer write(ServerHttpResponse response, Fields fields) {
+        DataBuffer buffer = response.bufferFactory().allocateBuffer(256);
+        try (JsonGenerator generator = this.jsonFactory.createGenerator(buffer.asOutputStream())) {
+            generator.writeStartObject();
+            fields.write(generator);
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer;
+    }
+
+    private interface Fields {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+}
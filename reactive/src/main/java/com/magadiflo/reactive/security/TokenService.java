@@ -0,0 +1,140 @@
+package com.magadiflo.reactive.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
+import com.auth0.jwt.exceptions.InvalidClaimException;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.Claim;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Creación y verificación de los tokens, con el mismo formato que JwtTokenProvider en la versión servlet
+ * (kid en la cabecera, jti, claim "rm" con la máscara de roles, claim "typ" con el tipo de token),
+ * así un token emitido por una se acepta en la otra.
+ * Firmar y verificar RS256 es trabajo de CPU de unos pocos cientos de microsegundos: se hace en el mismo hilo.
+ */
+@Component
+public class TokenService {
+
+    //Formato anterior: arreglo con los nombres de los roles
+    public static final String ROLES_CLAIM = "roles";
+    public static final String ROLE_MASK_CLAIM = "rm";
+    public static final String TOKEN_TYPE_CLAIM = "typ";
+    public static final String ACCESS_TOKEN_TYPE = "access";
+    public static final String REFRESH_TOKEN_TYPE = "refresh";
+
+    private static final long ACCESS_TOKEN_VALIDITY = 10 * 60 * 1000; //10 minutos
+    private static final long REFRESH_TOKEN_VALIDITY = 30 * 60 * 1000; //30 minutos
+
+    private final JwtKeys jwtKeys;
+    private final RoleMasks roleMasks;
+
+    public TokenService(JwtKeys jwtKeys, RoleMasks roleMasks) {
+        this.jwtKeys = jwtKeys;
+        this.roleMasks = roleMasks;
+    }
+
+    public String createAccessToken(String username, List<String> roles, String issuer) {
+        JwtKeys.ActiveKey signingKey = this.jwtKeys.getSigningKey();
+        JWTCreator.Builder builder = JWT.create()
+                .withKeyId(signingKey.getKid())
+                .withJWTId(UUID.randomUUID().toString())
+                .withSubject(username)
+                .withExpiresAt(new Date(System.currentTimeMillis() + ACCESS_TOKEN_VALIDITY))
+                .withIssuer(issuer)
+                .withClaim(TOKEN_TYPE_CLAIM, ACCESS_TOKEN_TYPE);
+        BitSet roleMask = this.roleMasks.toMask(roles);
+        if (roleMask.length() <= 63) {
+            builder.withClaim(ROLE_MASK_CLAIM, roleMask.isEmpty() ? 0L : roleMask.toLongArray()[0]);
+        } else {
+            builder.withClaim(ROLE_MASK_CLAIM, RoleMasks.encode(roleMask));
+        }
+        return builder.sign(signingKey.getAlgorithm());
+    }
+
+    public String createRefreshToken(String username, String issuer) {
+        JwtKeys.ActiveKey signingKey = this.jwtKeys.getSigningKey();
+        return JWT.create()
+                .withKeyId(signingKey.getKid())
+                .withJWTId(UUID.randomUUID().toString())
+                .withSubject(username)
+                .withExpiresAt(new Date(System.currentTimeMillis() + REFRESH_TOKEN_VALIDITY))
+                .withIssuer(issuer)
+                .withClaim(TOKEN_TYPE_CLAIM, REFRESH_TOKEN_TYPE)
+                .sign(signingKey.getAlgorithm());
+    }
+
+    /**
+     * Verifica la firma y la expiración. Termina con JWTVerificationException si el token no es válido
+     * o fue firmado con una clave desconocida.
+     */
+    public Mono<DecodedJWT> verify(String token) {
+        return Mono.fromCallable(() -> JWT.decode(token))
+                .flatMap(decodedJWT -> this.jwtKeys.getVerifier(decodedJWT.getKeyId())
+                        .switchIfEmpty(Mono.error(() -> new JWTVerificationException("The token was signed with an unknown key")))
+                        .map(verifier -> verifier.verify(decodedJWT)));
+    }
+
+    //Como verify, pero además termina con JWTVerificationException si no es un access_token
+    public Mono<DecodedJWT> verifyAccessToken(String token) {
+        return this.verify(token).map(decodedJWT -> requireType(decodedJWT, ACCESS_TOKEN_TYPE));
+    }
+
+    //Como verify, pero además termina con JWTVerificationException si no es un refresh_token
+    public Mono<DecodedJWT> verifyRefreshToken(String token) {
+        return this.verify(token).map(decodedJWT -> requireType(decodedJWT, REFRESH_TOKEN_TYPE));
+    }
+
+    private static DecodedJWT requireType(DecodedJWT decodedJWT, String expectedType) {
+        if (!expectedType.equals(tokenType(decodedJWT))) {
+            throw new JWTVerificationException("Expected a token of type " + expectedType);
+        }
+        return decodedJWT;
+    }
+
+    //Igual que en JwtTokenProvider: los tokens sin typ se distinguen por los roles, solo los access_token los llevan
+    private static String tokenType(DecodedJWT decodedJWT) {
+        String type = decodedJWT.getClaim(TOKEN_TYPE_CLAIM).asString();
+        if (type != null) {
+            return type;
+        }
+        return decodedJWT.getClaim(ROLE_MASK_CLAIM).isNull() && decodedJWT.getClaim(ROLES_CLAIM).isNull()
+                ? REFRESH_TOKEN_TYPE
+                : ACCESS_TOKEN_TYPE;
+    }
+
+    public UsernamePasswordAuthenticationToken getAuthentication(DecodedJWT decodedJWT) {
+        return new UsernamePasswordAuthenticationToken(decodedJWT.getSubject(), null, this.getAuthorities(decodedJWT));
+    }
+
+    private List<GrantedAuthority> getAuthorities(DecodedJWT decodedJWT) {
+        Claim roleMask = decodedJWT.getClaim(ROLE_MASK_CLAIM);
+        if (!roleMask.isNull()) {
+            Long mask = roleMask.asLong();
+            return mask != null ? this.roleMasks.getAuthorities(mask) : this.roleMasks.getAuthorities(roleMask.asString());
+        }
+        //Tokens emitidos antes de la máscara de bits. Sin ninguno de los dos claims se rechaza, no se autentica sin roles
+        String[] roles = decodedJWT.getClaim(ROLES_CLAIM).asArray(String.class);
+        if (roles == null) {
+            throw new InvalidClaimException("The token has no roles");
+        }
+        List<GrantedAuthority> authorities = new ArrayList<>(roles.length);
+        for (String role : roles) {
+            authorities.add(new SimpleGrantedAuthority(role));
+        }
+        return Collections.unmodifiableList(authorities);
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.magadiflo.reactive.service;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+/**
+ * Los mismos eventos de change_log que ChangeLog en la versión servlet: así las instancias servlet invalidan
+ * sus cachés también cuando el cambio se hizo aquí. Se llama dentro de la transacción de la escritura.
+ * Los eventos de las demás instancias los aplica ChangeLogPoller.
+ */
+@Component
+public class ChangeLog {
+
+    public enum EntityType {
+        USER,           //entity_key: username
+        ROLE,           //entity_key: nombre del rol
+        REVOKED_TOKEN,  //entity_key: jti
+        PASSWORD_POLICY //entity_key: algoritmo (bcrypt); solo lo usa la versión servlet
+    }
+
+    private static final String INSERT = "insert into change_log (entity_type, entity_key) values (:entityType, :entityKey)";
+
+    private final DatabaseClient databaseClient;
+
+    public ChangeLog(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Mono<Void> append(EntityType type, String key) {
+        return this.databaseClient.sql(INSERT)
+                .bind("entityType", type.name())
+                .bind("entityKey", key)
+                .fetch().rowsUpdated()
+                .then();
+    }
+
+    //Uno tras otro por la misma conexión, igual que los inserts de assignRoles
+    public Mono<Void> appendAll(EntityType type, Collection<String> keys) {
+        return Flux.fromIterable(keys)
+                .concatMap(key -> this.append(type, key))
+                .then();
+    }
+
+}
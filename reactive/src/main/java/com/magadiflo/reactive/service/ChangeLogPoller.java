@@ -0,0 +1,189 @@
+package com.magadiflo.reactive.service;
+
+import com.magadiflo.reactive.security.RevokedTokens;
+import com.magadiflo.reactive.security.RoleMasks;
+import com.magadiflo.reactive.service.ChangeLog.EntityType;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lee la tabla change_log como ChangeLogPoller en la versión servlet, para aplicar lo que cambió en otra
+ * instancia (servlet o reactiva) sin esperar a las sincronizaciones periódicas:
+ * - ROLE: RoleMasks se recarga
+ * - REVOKED_TOKEN: RevokedTokens se sincroniza
+ * - cualquiera: DataVersion (ETag de los listados)
+ * USER no tiene nada propio que invalidar: esta variante no guarda usuarios en memoria.
+ * Los eventos nuevos se leen con id mayor al último visto y los huecos se vuelven a pedir por id (ver Cursor).
+ */
+@Slf4j
+@Component
+@DependsOnDatabaseInitialization
+public class ChangeLogPoller {
+
+    private final DatabaseClient databaseClient;
+    private final RoleMasks roleMasks;
+    private final RevokedTokens revokedTokens;
+    private final DataVersion dataVersion;
+    private final int batchSize;
+    private final Cursor cursor;
+    //Una sola lectura a la vez: el Cursor no es thread-safe y la anterior puede seguir en curso
+    private final AtomicBoolean polling = new AtomicBoolean();
+
+    public ChangeLogPoller(DatabaseClient databaseClient, RoleMasks roleMasks, RevokedTokens revokedTokens,
+                           DataVersion dataVersion,
+                           @Value("${app.change-log.batch-size}") int batchSize,
+                           @Value("${app.change-log.gap-timeout}") Duration gapTimeout) {
+        this.databaseClient = databaseClient;
+        this.roleMasks = roleMasks;
+        this.revokedTokens = revokedTokens;
+        this.dataVersion = dataVersion;
+        this.batchSize = batchSize;
+        this.cursor = new Cursor(gapTimeout.toNanos());
+    }
+
+    //Al arrancar todo se cargó de la BD: solo interesa lo que cambie de aquí en adelante
+    @PostConstruct
+    public void init() {
+        //Con coalesce: el mapper de R2DBC no puede devolver null
+        Long maxId = this.databaseClient.sql("select coalesce(max(id), 0) from change_log")
+                .map((row, metadata) -> row.get(0, Long.class))
+                .one()
+                .block();
+        this.cursor.start(maxId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.change-log.poll-interval}",
+            initialDelayString = "${app.change-log.poll-interval}")
+    public void poll() {
+        if (!this.polling.compareAndSet(false, true)) {
+            return;
+        }
+        this.readEvents()
+                .collectList()
+                .flatMap(this::apply)
+                .doFinally(signal -> this.polling.set(false))
+                .subscribe(null, e -> log.warn("Error polling the change log: {}", e.getMessage()));
+    }
+
+    private Flux<ChangeEvent> readEvents() {
+        List<Long> gaps = this.cursor.gapIds();
+        List<List<Long>> groups = new ArrayList<>();
+        for (int from = 0; from < gaps.size(); from += this.batchSize) {
+            groups.add(gaps.subList(from, Math.min(from + this.batchSize, gaps.size())));
+        }
+        Flux<ChangeEvent> gapEvents = Flux.fromIterable(groups)
+                .concatMap(ids -> this.databaseClient.sql("select id, entity_type from change_log where id in (:ids)")
+                        .bind("ids", ids)
+                        .map((row, metadata) -> new ChangeEvent(row.get(0, Long.class), row.get(1, String.class)))
+                        .all());
+        Flux<ChangeEvent> newEvents = this.databaseClient.sql("select id, entity_type from change_log where id > :lastSeen order by id limit :limit")
+                .bind("lastSeen", this.cursor.lastSeen())
+                .bind("limit", this.batchSize)
+                .map((row, metadata) -> new ChangeEvent(row.get(0, Long.class), row.get(1, String.class)))
+                .all();
+        return gapEvents.concatWith(newEvents);
+    }
+
+    private Mono<Void> apply(List<ChangeEvent> events) {
+        long now = System.nanoTime();
+        Set<EntityType> types = EnumSet.noneOf(EntityType.class);
+        for (ChangeEvent event : events) {
+            if (!this.cursor.accept(event.getId(), now)) {
+                continue;
+            }
+            try {
+                types.add(EntityType.valueOf(event.getEntityType()));
+            } catch (IllegalArgumentException e) {
+                log.warn("Unknown change log entity type {} (id {})", event.getEntityType(), event.getId());
+            }
+        }
+        this.cursor.expireGaps(now);
+        if (types.isEmpty()) {
+            return Mono.empty();
+        }
+
+        log.debug("Applying change log events of types {} up to id {}", types, this.cursor.lastSeen());
+        if (types.contains(EntityType.REVOKED_TOKEN)) {
+            this.revokedTokens.sync();
+        }
+        this.dataVersion.sync();
+        return types.contains(EntityType.ROLE) ? this.roleMasks.reload() : Mono.empty();
+    }
+
+    /**
+     * El mismo cursor que en la versión servlet (los dos proyectos no comparten código): un id de
+     * auto_increment se ve recién con el commit, así que los ids que faltan entre dos eventos se recuerdan
+     * como huecos y se vuelven a pedir hasta que aparezcan o pase gap-timeout. Supone auto_increment_increment = 1.
+     */
+    static class Cursor {
+
+        //Un salto mayor no es una transacción en curso (p. ej. ids reservados y descartados por InnoDB)
+        private static final int MAX_TRACKED_GAP = 1000;
+
+        private final long gapTimeoutNanos;
+        //id faltante -> cuándo se detectó (System.nanoTime)
+        private final TreeMap<Long, Long> gaps = new TreeMap<>();
+        private long lastSeen;
+
+        Cursor(long gapTimeoutNanos) {
+            this.gapTimeoutNanos = gapTimeoutNanos;
+        }
+
+        void start(long lastId) {
+            this.lastSeen = lastId;
+            this.gaps.clear();
+        }
+
+        //true si el evento no se había aplicado todavía
+        boolean accept(long id, long nowNanos) {
+            if (id > this.lastSeen) {
+                if (id - this.lastSeen - 1 <= MAX_TRACKED_GAP) {
+                    for (long missing = this.lastSeen + 1; missing < id; missing++) {
+                        this.gaps.put(missing, nowNanos);
+                    }
+                }
+                this.lastSeen = id;
+                return true;
+            }
+            return this.gaps.remove(id) != null;
+        }
+
+        void expireGaps(long nowNanos) {
+            this.gaps.values().removeIf(detectedAt -> nowNanos - detectedAt >= this.gapTimeoutNanos);
+        }
+
+        long lastSeen() {
+            return this.lastSeen;
+        }
+
+        //Los ids que faltan, de menor a mayor
+        List<Long> gapIds() {
+            return new ArrayList<>(this.gaps.keySet());
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class ChangeEvent {
+        private final long id;
+        private final String entityType;
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.magadiflo.reactive.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * La misma versión de los datos (fila de data_version) que DataVersion en la versión servlet, usada como ETag
+ * de los listados: una escritura en cualquiera de las dos aplicaciones cambia el ETag en ambas.
+ * bump() se llama dentro de la transacción de la escritura y la versión en memoria avanza recién después del commit.
+ */
+@Slf4j
+@Component
+@DependsOnDatabaseInitialization
+public class DataVersion {
+
+    private final DatabaseClient databaseClient;
+    private final AtomicLong version = new AtomicLong();
+
+    public DataVersion(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.read().doOnNext(this::advanceTo).block();
+    }
+
+    public long current() {
+        return this.version.get();
+    }
+
+    public Mono<Void> bump() {
+        return this.databaseClient.sql("update data_version set version = version + 1 where id = 1")
+                .fetch().rowsUpdated()
+                .then(this.read())
+                .flatMap(newVersion -> TransactionSynchronizationManager.forCurrentTransaction()
+                        .doOnNext(synchronizationManager -> synchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                            @Override
+                            public Mono<Void> afterCommit() {
+                                return Mono.fromRunnable(() -> advanceTo(newVersion));
+                            }
+                        }))
+                        .then()
+                        .onErrorResume(NoTransactionException.class, e -> Mono.fromRunnable(() -> this.advanceTo(newVersion))));
+    }
+
+    @Scheduled(fixedDelayString = "${app.data-version.sync-interval}",
+            initialDelayString = "${app.data-version.sync-interval}")
+    public void sync() {
+        this.read().subscribe(this::advanceTo, e -> log.warn("Error reading the data version: {}", e.getMessage()));
+    }
+
+    private Mono<Long> read() {
+        return this.databaseClient.sql("select version from data_version where id = 1")
+                .map((row, metadata) -> row.get(0, Long.class))
+                .one()
+                .defaultIfEmpty(0L);
+    }
+
+    private void advanceTo(long newVersion) {
+        long previous = this.version.getAndAccumulate(newVersion, Math::max);
+        if (newVersion > previous) {
+            log.debug("Data version {} -> {}", previous, newVersion);
+        }
+    }
+
+}
@@ -0,0 +1,326 @@
+package com.magadiflo.reactive.service;
+
+import com.magadiflo.reactive.domain.Role;
+import com.magadiflo.reactive.domain.User;
+import com.magadiflo.reactive.dto.RoleAssignment;
+import com.magadiflo.reactive.dto.RoleAssignmentRequest;
+import com.magadiflo.reactive.dto.RoleAssignmentResult;
+import com.magadiflo.reactive.dto.UserCredentials;
+import com.magadiflo.reactive.dto.UserPage;
+import com.magadiflo.reactive.dto.UserSearchPage;
+import com.magadiflo.reactive.repository.RoleRepository;
+import com.magadiflo.reactive.repository.SequenceIdAllocator;
+import com.magadiflo.reactive.repository.UserRepository;
+import com.magadiflo.reactive.repository.UserRoleRepository;
+import com.magadiflo.reactive.repository.UserSearchRepository;
+import com.magadiflo.reactive.repository.UserSearchRepository.SearchCursor;
+import com.magadiflo.reactive.repository.UserSearchRepository.SearchField;
+import com.magadiflo.reactive.security.PasswordHashing;
+import com.magadiflo.reactive.security.RoleMasks;
+import com.magadiflo.reactive.service.ChangeLog.EntityType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Las mismas operaciones que UserServiceImpl, sin bloquear: cada método devuelve un Mono o un Flux
+ * y las escrituras corren dentro de TransactionalOperator, que deja explícito dónde empieza y termina cada transacción.
+ * Como R2DBC no carga relaciones, los roles de cada página se traen con una segunda consulta (UserRoleRepository).
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class UserService {
+
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+    private static final int STREAM_BATCH_SIZE = 500;
+
+    private final UserRepository userRepository;
+    private final RoleRepository roleRepository;
+    private final UserRoleRepository userRoleRepository;
+    private final UserSearchRepository userSearchRepository;
+    private final SequenceIdAllocator idAllocator;
+    private final R2dbcEntityTemplate entityTemplate;
+    private final TransactionalOperator transactionalOperator;
+    private final PasswordHashing passwordHashing;
+    private final RoleMasks roleMasks;
+    private final DataVersion dataVersion;
+    private final ChangeLog changeLog;
+
+    //Vacío si el usuario no existe
+    public Mono<UserCredentials> getUserCredentials(String username) {
+        log.debug("Fetching credentials of user {} from the database", username);
+        return this.userRoleRepository.findCredentials(username);
+    }
+
+    //Dos consultas por página, igual que la versión servlet: los usuarios y luego los roles de todos ellos
+    public Mono<UserPage> getUsers(long afterId, int limit) {
+        log.debug("Fetching {} users after id {}", limit, afterId);
+        return this.userRepository.findPage(afterId, limit).collectList()
+                .flatMap(this::withRoles)
+                .map(users -> new UserPage(users,
+                        users.size() < limit ? null : users.get(users.size() - 1).getId()));
+    }
+
+    /**
+     * Todos los usuarios, por bloques de 500: mientras el cliente no lee, no se piden más filas (backpressure),
+     * así la memoria se mantiene constante sin importar el tamaño de la tabla.
+     */
+    public Flux<User> streamUsers() {
+        log.info("Streaming all users");
+        return this.userRepository.findAllOrderById()
+                .buffer(STREAM_BATCH_SIZE)
+                .concatMap(this::withRoles)
+                .concatMapIterable(users -> users);
+    }
+
+    public Mono<UserSearchPage> searchUsers(SearchField field, String prefix, String roleName, String after, int limit) {
+        log.debug("Searching {} users by {} starting with '{}'", limit, field, prefix);
+        SearchCursor cursor;
+        try {
+            cursor = decodeCursor(after);
+        } catch (IllegalArgumentException e) {
+            return Mono.error(e);
+        }
+        //0: sin filtro de rol (los ids empiezan en 1); un rol inexistente deja el Mono vacío
+        Mono<Long> roleId = roleName == null
+                ? Mono.just(0L)
+                : this.roleRepository.findByName(roleName).map(Role::getId);
+        return roleId
+                .flatMap(id -> this.userSearchRepository.searchIds(field, prefix, id == 0L ? null : id, cursor, limit).collectList())
+                .flatMap(ids -> ids.isEmpty() ? Mono.just(Collections.<User>emptyList()) : this.findAllWithRoles(ids))
+                .map(users -> {
+                    if (users.isEmpty()) {
+                        return new UserSearchPage(users, null);
+                    }
+                    User last = users.get(users.size() - 1);
+                    String nextCursor = users.size() < limit
+                            ? null
+                            : encodeCursor(field == SearchField.USERNAME ? last.getUsername() : last.getName(), last.getId());
+                    return new UserSearchPage(users, nextCursor);
+                })
+                //Un rol inexistente: página vacía
+                .defaultIfEmpty(new UserSearchPage(Collections.emptyList(), null));
+    }
+
+    public Mono<User> getUser(String username) {
+        log.debug("Fetching user {}", username);
+        return this.userRepository.findByUsername(username)
+                .flatMap(user -> this.withRoles(Collections.singletonList(user)))
+                .map(users -> users.get(0));
+    }
+
+    public Flux<Role> getRoles() {
+        log.debug("Fetching all roles");
+        return this.roleRepository.findAllOrderById();
+    }
+
+    public Mono<User> saveUser(User user) {
+        log.info("Saving new user {} to the database", user.getName());
+        List<Role> roles = user.getRoles() == null ? Collections.emptyList() : user.getRoles();
+        Mono<User> save = Mono.zip(this.idAllocator.nextId(SequenceIdAllocator.USERS_SEQUENCE), this.passwordHashing.encode(user.getPassword()))
+                .flatMap(idAndHash -> {
+                    user.setId(idAndHash.getT1());
+                    user.setPassword(idAndHash.getT2());
+                    return this.entityTemplate.insert(user);
+                })
+                .flatMap(saved -> Flux.fromIterable(roles)
+                        .filter(role -> role.getId() != null)
+                        .concatMap(role -> this.userRoleRepository.insert(saved.getId(), role.getId()))
+                        .then(this.changeLog.append(EntityType.USER, saved.getUsername()))
+                        .then(this.dataVersion.bump())
+                        .thenReturn(saved));
+        return this.transactionalOperator.transactional(save);
+    }
+
+    public Mono<Role> saveRole(Role role) {
+        log.info("Saving new role {} to the database", role.getName());
+        Mono<Role> save = Mono.zip(this.idAllocator.nextId(SequenceIdAllocator.ROLES_SEQUENCE),
+                        this.roleRepository.findMaxBitIndex().map(max -> max + 1))
+                .flatMap(idAndBit -> {
+                    role.setId(idAndBit.getT1());
+                    //Cada rol nuevo toma la siguiente posición libre en la máscara de bits de los tokens
+                    if (role.getBitIndex() == null) {
+                        role.setBitIndex(idAndBit.getT2());
+                    }
+                    return this.entityTemplate.insert(role);
+                })
+                .flatMap(saved -> this.changeLog.append(EntityType.ROLE, saved.getName())
+                        .then(this.dataVersion.bump())
+                        .thenReturn(saved));
+        //Después del commit, para que la recarga ya vea el rol nuevo
+        return this.transactionalOperator.transactional(save)
+                .flatMap(saved -> this.roleMasks.reload().thenReturn(saved));
+    }
+
+    //Un usuario o rol inexistente termina con IllegalArgumentException (400 en UserResource)
+    public Mono<Void> addRoleToUser(String username, String roleName) {
+        log.info("Adding role {} to user {}", roleName, username);
+        Mono<Void> add = Mono.zip(
+                        this.userRepository.findByUsername(username)
+                                .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("User " + username + " not found"))),
+                        this.roleRepository.findByName(roleName)
+                                .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("Role " + roleName + " not found"))))
+                .flatMap(userAndRole -> this.userRoleRepository.findPairs(Collections.singletonList(userAndRole.getT1().getId()))
+                        .any(pair -> pair.get(1).equals(userAndRole.getT2().getId()))
+                        .flatMap(exists -> exists
+                                ? Mono.<Void>empty()
+                                : this.userRoleRepository.insert(userAndRole.getT1().getId(), userAndRole.getT2().getId())
+                                .then(this.changeLog.append(EntityType.USER, username))
+                                .then(this.dataVersion.bump())));
+        return this.transactionalOperator.transactional(add);
+    }
+
+    /**
+     * La asignación masiva de UserServiceImpl.assignRoles: se resuelven usuarios y roles con consultas IN,
+     * se leen las asignaciones existentes y se escriben solo las filas que cambian, todo en una transacción.
+     * Los inserts y deletes van uno tras otro por la misma conexión (R2DBC no tiene el batch de JDBC con parámetros).
+     */
+    public Mono<RoleAssignmentResult> assignRoles(RoleAssignmentRequest request) {
+        List<RoleAssignment> grants = request.getGrants() == null ? Collections.emptyList() : request.getGrants();
+        List<RoleAssignment> revokes = request.getRevokes() == null ? Collections.emptyList() : request.getRevokes();
+        log.info("Assigning {} roles and revoking {} roles", grants.size(), revokes.size());
+
+        Set<String> usernames = new HashSet<>();
+        Set<String> roleNames = new HashSet<>();
+        for (RoleAssignment assignment : grants) {
+            usernames.add(assignment.getUsername());
+            roleNames.add(assignment.getRoleName());
+        }
+        for (RoleAssignment assignment : revokes) {
+            usernames.add(assignment.getUsername());
+            roleNames.add(assignment.getRoleName());
+        }
+
+        Mono<Map<String, Long>> userIds = Flux.fromIterable(partition(new ArrayList<>(usernames)))
+                .concatMap(this.userRepository::findByUsernameIn)
+                .collectMap(User::getUsername, User::getId);
+        Mono<Map<String, Long>> roleIds = roleNames.isEmpty()
+                ? Mono.just(Collections.<String, Long>emptyMap())
+                : this.roleRepository.findByNameIn(roleNames).collectMap(Role::getName, Role::getId);
+
+        Mono<RoleAssignmentResult> assign = Mono.zip(userIds, roleIds).flatMap(ids -> {
+            Map<String, Long> usersByName = ids.getT1();
+            Map<String, Long> rolesByName = ids.getT2();
+            return Flux.fromIterable(partition(new ArrayList<>(usersByName.values())))
+                    .concatMap(this.userRoleRepository::findPairs)
+                    .collect(Collectors.toSet())
+                    .flatMap(existing -> {
+                        List<String> errors = new ArrayList<>();
+                        boolean[] changed = {false};
+                        Set<List<Long>> toInsert = new LinkedHashSet<>();
+                        for (RoleAssignment grant : grants) {
+                            List<Long> pair = resolve(grant, usersByName, rolesByName, errors);
+                            if (pair != null && !existing.contains(pair) && toInsert.add(pair)) {
+                                changed[0] = true;
+                            }
+                        }
+                        Set<List<Long>> toDelete = new LinkedHashSet<>();
+                        for (RoleAssignment revoke : revokes) {
+                            List<Long> pair = resolve(revoke, usersByName, rolesByName, errors);
+                            if (pair == null || toInsert.remove(pair)) {
+                                continue;
+                            }
+                            if (existing.contains(pair) && toDelete.add(pair)) {
+                                changed[0] = true;
+                            }
+                        }
+                        //Los usuarios cuyos roles cambian, para el evento de change_log
+                        Map<Long, String> usernamesById = new HashMap<>();
+                        usersByName.forEach((name, id) -> usernamesById.put(id, name));
+                        Set<String> changedUsers = new LinkedHashSet<>();
+                        toInsert.forEach(pair -> changedUsers.add(usernamesById.get(pair.get(0))));
+                        toDelete.forEach(pair -> changedUsers.add(usernamesById.get(pair.get(0))));
+                        Mono<Void> writes = Flux.fromIterable(toInsert)
+                                .concatMap(pair -> this.userRoleRepository.insert(pair.get(0), pair.get(1)))
+                                .thenMany(Flux.fromIterable(toDelete)
+                                        .concatMap(pair -> this.userRoleRepository.delete(pair.get(0), pair.get(1))))
+                                .then(this.changeLog.appendAll(EntityType.USER, changedUsers))
+                                .then(changed[0] ? this.dataVersion.bump() : Mono.<Void>empty());
+                        return writes.thenReturn(new RoleAssignmentResult(toInsert.size(), toDelete.size(), errors));
+                    });
+        });
+        return this.transactionalOperator.transactional(assign);
+    }
+
+    //Los usuarios de esos ids, con sus roles, en el mismo orden de ids
+    private Mono<List<User>> findAllWithRoles(List<Long> ids) {
+        return this.userRepository.findAllById(ids).collectMap(User::getId)
+                .map(usersById -> ids.stream().map(usersById::get).collect(Collectors.toList()))
+                .flatMap(this::withRoles);
+    }
+
+    private Mono<List<User>> withRoles(List<User> users) {
+        if (users.isEmpty()) {
+            return Mono.just(users);
+        }
+        Map<Long, User> usersById = new HashMap<>();
+        for (User user : users) {
+            user.setRoles(new ArrayList<>());
+            usersById.put(user.getId(), user);
+        }
+        return this.userRoleRepository.findRoles(usersById.keySet())
+                .doOnNext(row -> usersById.get(row.getUserId()).getRoles().add(row.getRole()))
+                .then(Mono.just(users));
+    }
+
+    private static List<Long> resolve(RoleAssignment assignment, Map<String, Long> userIds, Map<String, Long> roleIds,
+                                      List<String> errors) {
+        Long userId = userIds.get(assignment.getUsername());
+        Long roleId = roleIds.get(assignment.getRoleName());
+        if (userId == null) {
+            errors.add("User " + assignment.getUsername() + " not found");
+            return null;
+        }
+        if (roleId == null) {
+            errors.add("Role " + assignment.getRoleName() + " not found");
+            return null;
+        }
+        List<Long> pair = new ArrayList<>(2);
+        pair.add(userId);
+        pair.add(roleId);
+        return pair;
+    }
+
+    //El cursor viaja como Base64 de "<id>:<valor>", igual que en la versión servlet
+    private static String encodeCursor(String value, long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((id + ":" + value).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static SearchCursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int separator = decoded.indexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return new SearchCursor(decoded.substring(separator + 1), Long.parseLong(decoded.substring(0, separator)));
+    }
+
+    private static <T> List<List<T>> partition(List<T> list) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < list.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            chunks.add(list.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, list.size())));
+        }
+        return chunks;
+    }
+
+}
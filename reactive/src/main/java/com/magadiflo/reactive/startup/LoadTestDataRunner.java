@@ -0,0 +1,86 @@
+package com.magadiflo.reactive.startup;
+
+import com.magadiflo.reactive.domain.Role;
+import com.magadiflo.reactive.domain.User;
+import com.magadiflo.reactive.dto.RoleAssignment;
+import com.magadiflo.reactive.dto.RoleAssignmentRequest;
+import com.magadiflo.reactive.repository.SequenceIdAllocator;
+import com.magadiflo.reactive.service.UserService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Con el perfil loadtest crea los mismos roles, usuarios y contraseña que LoadTestData del harness
+ * de la aplicación servlet, así LoadTest --target=http://localhost:8081 mide las dos versiones con los mismos datos.
+ * Corre al terminar de arrancar: hay que esperar el mensaje "Load test data ready" antes de lanzar el load test.
+ */
+@Slf4j
+@Profile("loadtest")
+@Component
+@RequiredArgsConstructor
+public class LoadTestDataRunner implements ApplicationRunner {
+
+    //Los mismos valores que LoadTestData
+    private static final String PASSWORD = "loadtest-password";
+    private static final String EXTRA_ROLE_PREFIX = "ROLE_LOADTEST_";
+    private static final int CHUNK_SIZE = 1000;
+
+    private final UserService userService;
+    private final SequenceIdAllocator idAllocator;
+    private final R2dbcEntityTemplate entityTemplate;
+    private final PasswordEncoder passwordEncoder;
+
+    @Value("${app.loadtest.users}")
+    private int users;
+    @Value("${app.loadtest.roles}")
+    private int roles;
+    @Value("${app.loadtest.admins}")
+    private int admins;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        int extraRoles = this.roles - 2;
+        this.userService.saveRole(new Role(null, "ROLE_USER", null)).block();
+        this.userService.saveRole(new Role(null, "ROLE_ADMIN", null)).block();
+        for (int i = 0; i < extraRoles; i++) {
+            this.userService.saveRole(new Role(null, EXTRA_ROLE_PREFIX + i, null)).block();
+        }
+
+        //Un solo BCrypt para todos los usuarios, igual que en LoadTestData
+        String hash = this.passwordEncoder.encode(PASSWORD);
+        Flux.range(0, this.users)
+                .concatMap(i -> this.idAllocator.nextId(SequenceIdAllocator.USERS_SEQUENCE)
+                        .flatMap(id -> this.entityTemplate.insert(new User(id, "Load test " + i, "user" + i, hash))))
+                .then()
+                .block();
+
+        for (int from = 0; from < this.users; from += CHUNK_SIZE) {
+            RoleAssignmentRequest request = new RoleAssignmentRequest();
+            for (int i = from; i < Math.min(this.users, from + CHUNK_SIZE); i++) {
+                request.getGrants().add(new RoleAssignment("user" + i, "ROLE_USER"));
+                if (i < this.admins) {
+                    request.getGrants().add(new RoleAssignment("user" + i, "ROLE_ADMIN"));
+                }
+                if (extraRoles > 0) {
+                    request.getGrants().add(new RoleAssignment("user" + i, EXTRA_ROLE_PREFIX + (i % extraRoles)));
+                }
+            }
+            this.userService.assignRoles(request).block();
+        }
+        //WARN: el perfil loadtest solo deja pasar WARN y ERROR
+        log.warn("Load test data ready: {} users, {} roles in {} ms", this.users, this.roles,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+}
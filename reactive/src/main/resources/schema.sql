@@ -0,0 +1,61 @@
+-- Esquema para la BD embebida (H2): las mismas tablas que crean las migraciones de Flyway de la aplicación servlet
+create table if not exists roles (
+    id        bigint       not null primary key,
+    name      varchar(255),
+    bit_index integer,
+    constraint uk_roles_bit_index unique (bit_index),
+    constraint uk_roles_name unique (name)
+);
+
+create table if not exists roles_seq (
+    next_val bigint
+);
+insert into roles_seq select 1 where not exists (select 1 from roles_seq);
+
+create table if not exists users (
+    id       bigint       not null primary key,
+    name     varchar_ignorecase(255),
+    username varchar_ignorecase(255),
+    password varchar(255),
+    constraint uk_users_username unique (username)
+);
+create index if not exists idx_users_name on users (name);
+
+create table if not exists users_seq (
+    next_val bigint
+);
+insert into users_seq select 1 where not exists (select 1 from users_seq);
+
+create table if not exists users_roles (
+    user_id  bigint not null,
+    roles_id bigint not null,
+    constraint fk_users_roles_user foreign key (user_id) references users (id),
+    constraint fk_users_roles_role foreign key (roles_id) references roles (id)
+);
+create index if not exists idx_users_roles_user_role on users_roles (user_id, roles_id);
+
+create table if not exists signing_keys (
+    kid         varchar(64)   not null primary key,
+    public_key  varchar(8192) not null,
+    private_key varchar(8192) not null,
+    created_at  timestamp(6)  not null
+);
+
+create table if not exists revoked_tokens (
+    jti        varchar(64)  not null primary key,
+    expires_at timestamp(6) not null,
+    revoked_at timestamp(6) not null
+);
+
+create table if not exists data_version (
+    id      integer not null primary key,
+    version bigint  not null
+);
+insert into data_version select 1, 0 where not exists (select 1 from data_version);
+
+create table if not exists change_log (
+    id          bigint       not null auto_increment primary key,
+    entity_type varchar(16)  not null,
+    entity_key  varchar(255) not null,
+    created_at  timestamp(6) not null default current_timestamp(6)
+);
@@ -0,0 +1,186 @@
+package com.magadiflo.reactive;
+
+import com.magadiflo.reactive.domain.Role;
+import com.magadiflo.reactive.domain.User;
+import com.magadiflo.reactive.security.RevokedTokens;
+import com.magadiflo.reactive.service.ChangeLogPoller;
+import com.magadiflo.reactive.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.r2dbc.url=r2dbc:h2:mem:///reactive-test;DB_CLOSE_DELAY=-1")
+class ReactiveAuthApplicationTests {
+
+    private static final String PASSWORD = "12345";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ChangeLogPoller changeLogPoller;
+
+    @Autowired
+    private RevokedTokens revokedTokens;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    private String username;
+
+    @BeforeEach
+    void createUser() {
+        Role role = this.userService.getRoles().filter(r -> r.getName().equals("ROLE_USER")).next()
+                .switchIfEmpty(Mono.defer(() -> this.userService.saveRole(new Role(null, "ROLE_USER", null))))
+                .block();
+        this.username = "user-" + UUID.randomUUID();
+        this.userService.saveUser(new User(null, "Test user", this.username, PASSWORD,
+                new ArrayList<>(Collections.singletonList(role)))).block();
+    }
+
+    @Test
+    void loginAndListUsersWithETag() {
+        Map<String, String> tokens = this.tokens(this.login(PASSWORD));
+        assertThat(tokens).containsKeys("access_token", "refresh_token");
+
+        String eTag = this.webTestClient.get().uri("/api/users")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + tokens.get("access_token"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.ETAG)
+                .returnResult(String.class).getResponseHeaders().getETag();
+
+        this.webTestClient.get().uri("/api/users")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + tokens.get("access_token"))
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.NOT_MODIFIED);
+    }
+
+    @Test
+    void wrongPasswordIsUnauthorized() {
+        this.login("wrong-password").expectStatus().isUnauthorized()
+                .expectBody().jsonPath("$.error_message").isEqualTo("Bad credentials");
+    }
+
+    @Test
+    void refreshTokenCanOnlyBeUsedOnce() {
+        String refreshToken = this.tokens(this.login(PASSWORD)).get("refresh_token");
+
+        this.webTestClient.get().uri("/api/token/refresh")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + refreshToken)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.access_token").exists();
+
+        this.webTestClient.get().uri("/api/token/refresh")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + refreshToken)
+                .exchange()
+                .expectStatus().isForbidden();
+    }
+
+    @Test
+    void refreshTokenIsNotAnAccessToken() {
+        String refreshToken = this.tokens(this.login(PASSWORD)).get("refresh_token");
+
+        //POST /api/logout solo pide estar autenticado
+        this.webTestClient.post().uri("/api/logout")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + refreshToken)
+                .exchange()
+                .expectStatus().isForbidden()
+                .expectBody().jsonPath("$.error_message").isEqualTo("Expected a token of type access");
+    }
+
+    @Test
+    void accessTokenIsNotARefreshToken() {
+        String accessToken = this.tokens(this.login(PASSWORD)).get("access_token");
+
+        this.webTestClient.get().uri("/api/token/refresh")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
+                .exchange()
+                .expectStatus().isForbidden()
+                .expectBody().jsonPath("$.error_message").isEqualTo("Expected a token of type refresh");
+    }
+
+    //%, _ y el carácter de escape (!) escritos por el usuario no son comodines
+    @Test
+    void searchMatchesWildcardsLiterally() {
+        String accessToken = this.tokens(this.login(PASSWORD)).get("access_token");
+        String suffix = UUID.randomUUID().toString();
+        for (String username : new String[]{"a_" + suffix, "aX" + suffix, "b%" + suffix, "bX" + suffix, "c!_" + suffix, "cX_" + suffix}) {
+            this.userService.saveUser(new User(null, "Search user", username, PASSWORD, new ArrayList<>())).block();
+        }
+
+        for (String username : new String[]{"a_" + suffix, "b%" + suffix, "c!_" + suffix}) {
+            this.webTestClient.get().uri(builder -> builder.path("/api/users/search").queryParam("q", "{q}").build(username))
+                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody()
+                    .jsonPath("$.users.length()").isEqualTo(1)
+                    .jsonPath("$.users[0].username").isEqualTo(username);
+        }
+    }
+
+    //Otra instancia revocó un token: aquí solo se ven su fila en revoked_tokens y su evento en change_log
+    @Test
+    void appliesRevocationsFromOtherInstances() throws InterruptedException {
+        String jti = UUID.randomUUID().toString();
+        this.databaseClient.sql("insert into revoked_tokens (jti, expires_at, revoked_at) values (:jti, :expiresAt, :revokedAt)")
+                .bind("jti", jti)
+                .bind("expiresAt", LocalDateTime.now().plusHours(1))
+                .bind("revokedAt", LocalDateTime.now())
+                .fetch().rowsUpdated()
+                .then(this.databaseClient.sql("insert into change_log (entity_type, entity_key) values ('REVOKED_TOKEN', :jti)")
+                        .bind("jti", jti)
+                        .fetch().rowsUpdated())
+                .block();
+
+        //Sin esperar a la sincronización periódica (sync-interval)
+        long deadline = System.currentTimeMillis() + 3_000;
+        while (!this.revokedTokens.isRevoked(jti) && System.currentTimeMillis() < deadline) {
+            this.changeLogPoller.poll();
+            Thread.sleep(50);
+        }
+        assertThat(this.revokedTokens.isRevoked(jti)).isTrue();
+    }
+
+    @Test
+    void requestWithoutTokenIsForbidden() {
+        this.webTestClient.get().uri("/api/users").exchange().expectStatus().isForbidden();
+    }
+
+    private WebTestClient.ResponseSpec login(String password) {
+        return this.webTestClient.post().uri("/api/login")
+                .body(BodyInserters.fromFormData("username", this.username).with("password", password))
+                .exchange();
+    }
+
+    private Map<String, String> tokens(WebTestClient.ResponseSpec response) {
+        return response.expectStatus().isOk()
+                .expectBody(new ParameterizedTypeReference<Map<String, String>>() {
+                })
+                .returnResult().getResponseBody();
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.magadiflo.app.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.magadiflo.app.dto.UserCredentials;
+import com.magadiflo.app.service.UserCredentialsCache;
+import com.magadiflo.app.service.UserServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserServiceImpl.loadUserByUsername con el usuario ya en UserCredentialsCache:
+ * mide el paso de los nombres de roles a GrantedAuthority y la construcción del UserDetails.
+ * Las dependencias que no se usan con la caché caliente (repositorios, BD) quedan en null.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthorityMappingBenchmark {
+
+    private UserServiceImpl userService;
+
+    @Setup
+    public void setUp() {
+        //Sin la configuración de Spring Boot, logback registraría cada llamada en DEBUG
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        UserCredentialsCache credentialsCache = new UserCredentialsCache(10_000, Duration.ofHours(1), new SimpleMeterRegistry());
+        credentialsCache.get("martin", username -> new UserCredentials(username, "{bcrypt}hash",
+                Arrays.asList("ROLE_USER", "ROLE_MANAGER", "ROLE_ADMIN", "ROLE_SUPER_ADMIN")));
+        this.userService = new UserServiceImpl(null, null, null, null, credentialsCache, null, null, null, null);
+    }
+
+    @Benchmark
+    public UserDetails loadUserByUsername() {
+        return this.userService.loadUserByUsername("martin");
+    }
+
+}
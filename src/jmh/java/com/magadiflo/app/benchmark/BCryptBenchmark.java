@@ -0,0 +1,54 @@
+package com.magadiflo.app.benchmark;
+
+import com.magadiflo.app.security.PasswordHashPolicy;
+import com.magadiflo.app.security.TunableBCryptPasswordEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BCrypt (encode y matches) con distintos cost. Cada punto del cost duplica el tiempo,
+ * este benchmark ayuda a elegir app.security.password.bcrypt-strength según la capacidad
+ * de LoginExecutor (un hilo por núcleo).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BCryptBenchmark {
+
+    @Param({"4", "8", "10", "12"})
+    private int cost;
+
+    private TunableBCryptPasswordEncoder passwordEncoder;
+    private String hash;
+
+    @Setup
+    public void setUp() {
+        this.passwordEncoder = new TunableBCryptPasswordEncoder(new PasswordHashPolicy(this.cost));
+        this.hash = this.passwordEncoder.encode("12345");
+    }
+
+    @Benchmark
+    public String encode() {
+        return this.passwordEncoder.encode("12345");
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return this.passwordEncoder.matches("12345", this.hash);
+    }
+
+}
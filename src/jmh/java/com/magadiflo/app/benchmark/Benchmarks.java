@@ -0,0 +1,60 @@
+package com.magadiflo.app.benchmark;
+
+import com.magadiflo.app.domain.Role;
+import com.magadiflo.app.repository.IRevokedTokenRepository;
+import com.magadiflo.app.repository.IRolRepository;
+import com.magadiflo.app.repository.ISigningKeyRepository;
+import com.magadiflo.app.security.JwtKeyManager;
+import com.magadiflo.app.security.JwtTokenProvider;
+import com.magadiflo.app.security.RevocationStore;
+import com.magadiflo.app.security.RoleRegistry;
+import com.magadiflo.app.security.SecurityMetrics;
+import com.magadiflo.app.service.ChangeLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Objetos compartidos por los benchmarks, armados sin levantar el contexto de Spring.
+ */
+final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    //JwtTokenProvider con una sola clave RSA y los roles del CommandLineRunner en memoria (los repositorios son mocks)
+    static JwtTokenProvider tokenProvider() {
+        ISigningKeyRepository signingKeyRepository = mock(ISigningKeyRepository.class);
+        when(signingKeyRepository.findAllByOrderByCreatedAtDesc())
+                .thenReturn(Collections.singletonList(JwtKeyManager.newSigningKey(2048)));
+        JwtKeyManager keyManager = new JwtKeyManager(signingKeyRepository, Duration.ofDays(1),
+                Duration.ofHours(1), Duration.ofMinutes(5), 2048);
+        keyManager.init();
+
+        IRolRepository rolRepository = mock(IRolRepository.class);
+        when(rolRepository.findByBitIndexNotNull()).thenReturn(Arrays.asList(
+                new Role(1L, "ROLE_USER", 0), new Role(2L, "ROLE_MANAGER", 1),
+                new Role(3L, "ROLE_ADMIN", 2), new Role(4L, "ROLE_SUPER_ADMIN", 3)));
+        RoleRegistry roleRegistry = new RoleRegistry(rolRepository);
+        roleRegistry.init();
+        return new JwtTokenProvider(keyManager, roleRegistry, true, securityMetrics());
+    }
+
+    //Las métricas se registran en memoria, igual que en la aplicación pero sin publicarlas
+    static SecurityMetrics securityMetrics() {
+        return new SecurityMetrics(new SimpleMeterRegistry());
+    }
+
+    //RevocationStore vacío: el caso habitual, ningún token revocado
+    static RevocationStore revocationStore() {
+        return new RevocationStore(mock(IRevokedTokenRepository.class), mock(ChangeLog.class),
+                mock(TransactionTemplate.class), 100_000);
+    }
+
+}
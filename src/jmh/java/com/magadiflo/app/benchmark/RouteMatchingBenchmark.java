@@ -0,0 +1,96 @@
+package com.magadiflo.app.benchmark;
+
+import com.magadiflo.app.security.RouteTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cuánto cuesta encontrar la regla de acceso de una solicitud a medida que se agregan rutas protegidas
+ * (extraRoutes, del tipo /api/moduleN/**):
+ * - routeTable: RouteTable, depende solo de la profundidad del path
+ * - antMatchers: la cadena de AntPathRequestMatcher probada en orden, como hacía antes SecurityConfig
+ * La solicitud (POST /api/logout) no coincide con ninguna regla, el peor caso para la cadena.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteMatchingBenchmark {
+
+    private static final String METHOD = "POST";
+    private static final String PATH = "/api/logout";
+
+    @Param({"0", "25", "100"})
+    private int extraRoutes;
+
+    private RouteTable routeTable;
+    private List<RequestMatcher> antMatchers;
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setUp() {
+        RouteTable.Builder builder = new RouteTable.Builder()
+                .permitAll("/api/login/**", "/api/token/refresh/**")
+                .permitAll(HttpMethod.GET, "/.well-known/jwks.json")
+                .permitAll(HttpMethod.GET, "/actuator/health/**", "/actuator/prometheus")
+                .hasAnyAuthority(HttpMethod.GET, "/api/users/**", "ROLE_USER")
+                .hasAnyAuthority(HttpMethod.POST, "/api/users/import/**", "ROLE_ADMIN")
+                .hasAnyAuthority(HttpMethod.POST, "/api/role/assignments/**", "ROLE_ADMIN")
+                .hasAnyAuthority(HttpMethod.POST, "/api/user/save/**", "ROLE_ADMIN")
+                .hasAnyAuthority("/actuator/passwordhashing/**", "ROLE_SUPER_ADMIN");
+        this.antMatchers = new ArrayList<>();
+        this.antMatchers.add(new AntPathRequestMatcher("/api/login/**"));
+        this.antMatchers.add(new AntPathRequestMatcher("/api/token/refresh/**"));
+        this.antMatchers.add(new AntPathRequestMatcher("/.well-known/jwks.json", "GET"));
+        this.antMatchers.add(new AntPathRequestMatcher("/actuator/health/**", "GET"));
+        this.antMatchers.add(new AntPathRequestMatcher("/actuator/prometheus", "GET"));
+        this.antMatchers.add(new AntPathRequestMatcher("/api/users/**", "GET"));
+        this.antMatchers.add(new AntPathRequestMatcher("/api/users/import/**", "POST"));
+        this.antMatchers.add(new AntPathRequestMatcher("/api/role/assignments/**", "POST"));
+        this.antMatchers.add(new AntPathRequestMatcher("/api/user/save/**", "POST"));
+        this.antMatchers.add(new AntPathRequestMatcher("/actuator/passwordhashing/**"));
+        for (int i = 0; i < this.extraRoutes; i++) {
+            builder.hasAnyAuthority("/api/module" + i + "/**", "ROLE_ADMIN");
+            this.antMatchers.add(new AntPathRequestMatcher("/api/module" + i + "/**"));
+        }
+        this.routeTable = builder.build();
+
+        this.request = new MockHttpServletRequest(METHOD, PATH);
+        this.request.setServletPath(PATH);
+    }
+
+    @Benchmark
+    public RouteTable.Route routeTable() {
+        return this.routeTable.match(METHOD, PATH);
+    }
+
+    @Benchmark
+    public RequestMatcher antMatchers() {
+        for (RequestMatcher matcher : this.antMatchers) {
+            if (matcher.matches(this.request)) {
+                return matcher;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.magadiflo.app.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.magadiflo.app.security.TokenResponseWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialización JSON de la respuesta con los tokens (login y refresh).
+ * - legacyObjectMapper: lo que se hacía antes, un HashMap y un ObjectMapper nuevo por respuesta
+ * - tokenResponseWriter: TokenResponseWriter, que escribe los campos directamente con un JsonGenerator
+ * - responseOnly: solo la creación del MockHttpServletResponse, para descontarla de los otros dos
+ * Con -prof gc, gc.alloc.rate.norm da los bytes asignados por respuesta.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenResponseBenchmark {
+
+    private TokenResponseWriter tokenResponseWriter;
+    private String accessToken;
+    private String refreshToken;
+
+    @Setup
+    public void setUp() {
+        this.tokenResponseWriter = new TokenResponseWriter(new ObjectMapper());
+        //Tamaños parecidos a los de tokens reales con tres roles
+        this.accessToken = repeat('a', 260);
+        this.refreshToken = repeat('r', 190);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse responseOnly() {
+        return new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public MockHttpServletResponse legacyObjectMapper() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        Map<String, String> tokens = new HashMap<>();
+        tokens.put("access_token", this.accessToken);
+        tokens.put("refresh_token", this.refreshToken);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        new ObjectMapper().writeValue(response.getOutputStream(), tokens);
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse tokenResponseWriter() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        this.tokenResponseWriter.writeTokens(response, this.accessToken, this.refreshToken);
+        return response;
+    }
+
+    private static String repeat(char c, int times) {
+        StringBuilder builder = new StringBuilder(times);
+        for (int i = 0; i < times; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.magadiflo.app.benchmark;
+
+import com.magadiflo.app.security.JwtTokenProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Firma de los tokens tal como se hace en CustomAuthenticationFilter.successfulAuthentication
+ * (y en el refresh token): un access_token con roles y un refresh_token.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenSigningBenchmark {
+
+    private static final String ISSUER = "http://localhost:8080/api/login";
+
+    private JwtTokenProvider tokenProvider;
+    private List<String> roles;
+
+    @Setup
+    public void setUp() {
+        this.tokenProvider = Benchmarks.tokenProvider();
+        this.roles = Arrays.asList("ROLE_USER", "ROLE_MANAGER", "ROLE_ADMIN");
+    }
+
+    @Benchmark
+    public String accessToken() {
+        return this.tokenProvider.createAccessToken("martin", this.roles, ISSUER);
+    }
+
+    @Benchmark
+    public String refreshToken() {
+        return this.tokenProvider.createRefreshToken("martin", ISSUER);
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.magadiflo.app.benchmark;
+
+import com.magadiflo.app.security.AccessTokenCache;
+import com.magadiflo.app.security.JwtTokenProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lo que cuesta autorizar una solicitud en CustomAuthorizationFilter:
+ * - verifyAndDecode: verificación de la firma, decodificación de los claims y armado de la autenticación
+ * - cachedAuthentication: el mismo token ya presente en AccessTokenCache (el caso habitual),
+ *   incluida la consulta a RevocationStore
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenVerificationBenchmark {
+
+    private JwtTokenProvider tokenProvider;
+    private AccessTokenCache accessTokenCache;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        this.tokenProvider = Benchmarks.tokenProvider();
+        this.accessTokenCache = new AccessTokenCache(this.tokenProvider, Benchmarks.revocationStore(),
+                Benchmarks.securityMetrics(), 10_000);
+        //El token dura 10 minutos, más que cualquier ejecución del benchmark
+        this.token = this.tokenProvider.createAccessToken("martin",
+                Arrays.asList("ROLE_USER", "ROLE_MANAGER", "ROLE_ADMIN"), "http://localhost:8080/api/login");
+    }
+
+    @Benchmark
+    public UsernamePasswordAuthenticationToken verifyAndDecode() {
+        return this.tokenProvider.getAuthentication(this.tokenProvider.verify(this.token));
+    }
+
+    @Benchmark
+    public UsernamePasswordAuthenticationToken cachedAuthentication() {
+        return this.accessTokenCache.getAuthentication(this.token);
+    }
+
+}
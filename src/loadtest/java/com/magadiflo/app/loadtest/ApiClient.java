@@ -0,0 +1,96 @@
+package com.magadiflo.app.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Cliente HTTP mínimo sobre HttpURLConnection (mantiene las conexiones abiertas entre solicitudes:
+ * por eso siempre se lee la respuesta completa).
+ */
+class ApiClient {
+
+    private final String baseUrl;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    ApiClient(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    Response login(String username, String password) throws IOException {
+        String form = "username=" + URLEncoder.encode(username, "UTF-8") + "&password=" + URLEncoder.encode(password, "UTF-8");
+        return this.send("POST", "/api/login", null, null, "application/x-www-form-urlencoded", form);
+    }
+
+    Response refresh(String refreshToken) throws IOException {
+        return this.send("GET", "/api/token/refresh", refreshToken, null, null, null);
+    }
+
+    Response listUsers(String accessToken, String eTag) throws IOException {
+        return this.send("GET", "/api/users?limit=50", accessToken, eTag, null, null);
+    }
+
+    Response assignRoles(String accessToken, String json) throws IOException {
+        return this.send("POST", "/api/role/assignments", accessToken, null, "application/json", json);
+    }
+
+    //Para los access_token y refresh_token de /api/login y /api/token/refresh
+    JsonNode json(Response response) throws IOException {
+        return this.objectMapper.readTree(response.getBody());
+    }
+
+    private Response send(String method, String path, String bearerToken, String eTag, String contentType, String body)
+            throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(this.baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        if (bearerToken != null) {
+            connection.setRequestProperty("Authorization", "Bearer " + bearerToken);
+        }
+        if (eTag != null) {
+            connection.setRequestProperty("If-None-Match", eTag);
+        }
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", contentType);
+            try (OutputStream outputStream = connection.getOutputStream()) {
+                outputStream.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream inputStream = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        byte[] responseBody = inputStream == null ? new byte[0] : readFully(inputStream);
+        return new Response(status, responseBody, connection.getHeaderField("ETag"), connection.getHeaderField("Retry-After"));
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        try (InputStream in = inputStream) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    static class Response {
+        private final int status;
+        private final byte[] body;
+        private final String eTag;
+        private final String retryAfter;
+    }
+
+}
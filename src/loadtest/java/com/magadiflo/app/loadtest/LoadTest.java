@@ -0,0 +1,281 @@
+package com.magadiflo.app.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.magadiflo.app.SpringBootJwtAmigosCodeApplication;
+import com.magadiflo.app.dto.RoleAssignment;
+import com.magadiflo.app.dto.RoleAssignmentRequest;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load test en la propia máquina: levanta la aplicación con el perfil loadtest (H2 en memoria, puerto aleatorio),
+ * siembra usuarios y roles, y genera tráfico mixto (login, refresh, GET /api/users y asignación de roles)
+ * a una tasa fija. Al final imprime throughput y percentiles por endpoint y los guarda en output
+ * para comparar entre commits. Se ejecuta con mvn -Ploadtest verify (ver README).
+ * La carga es de lazo abierto: cada solicitud tiene un instante programado (inicio + i / rate) y la latencia
+ * se mide desde ese instante, no desde que se envió. Si la aplicación se atrasa, las solicitudes que esperan
+ * en la cola también cuentan esa espera (evita la "omisión coordinada" de medir solo lo que se alcanzó a enviar).
+ */
+public class LoadTest {
+
+    //Se renueva el access_token antes de que venza (dura 10 minutos)
+    private static final long ACCESS_TOKEN_REFRESH_NANOS = TimeUnit.MINUTES.toNanos(8);
+    private static final long DRAIN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(60);
+    //Con el pool de BCrypt saturado el login responde 503 y Retry-After: se reintenta hasta este número de veces
+    private static final int MAX_LOGIN_ATTEMPTS = 10;
+
+    private final LoadTestConfig config;
+    private final ApiClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+    private final Operation[] schedule;
+    //Una sesión la usa un solo hilo a la vez: se toma de la cola y se devuelve al terminar
+    private final BlockingQueue<Session> sessions;
+    private final BlockingQueue<Session> adminSessions;
+    private final ExecutorService workers;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    LoadTest(LoadTestConfig config, ApiClient client) {
+        this.config = config;
+        this.client = client;
+        List<Operation> schedule = new ArrayList<>();
+        config.getMix().forEach((operation, weight) -> {
+            this.stats.put(operation, new OperationStats());
+            for (int i = 0; i < weight; i++) {
+                schedule.add(operation);
+            }
+        });
+        this.schedule = schedule.toArray(new Operation[0]);
+        this.sessions = new ArrayBlockingQueue<>(config.getSessions());
+        this.adminSessions = new ArrayBlockingQueue<>(config.getAdmins());
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("loadtest-");
+        threadFactory.setDaemon(true);
+        this.workers = Executors.newFixedThreadPool(config.getThreads(), threadFactory);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.parse(args);
+        //Devtools está en el classpath: con el reinicio activo un arranque fallido no llega hasta aquí
+        //y la ejecución termina "bien" (BUILD SUCCESS). Se lee antes de cargar application.properties
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        if (config.getTarget() != null) {
+            //La aplicación ya tiene los datos de LoadTestData (ver el perfil loadtest de la variante reactiva)
+            run(config, new ApiClient(config.getTarget()));
+            return;
+        }
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(SpringBootJwtAmigosCodeApplication.class)
+                .profiles("loadtest")
+                .run();
+        try {
+            long seedStart = System.nanoTime();
+            LoadTestData.seed(context, config);
+            System.out.printf("Seeded %d users and %d roles in %d ms%n", config.getUsers(), config.getRoles(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - seedStart));
+
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            run(config, new ApiClient("http://localhost:" + port));
+        } finally {
+            context.close();
+        }
+    }
+
+    private static void run(LoadTestConfig config, ApiClient client) throws Exception {
+        LoadTestReport report = new LoadTest(config, client).run();
+        report.print(System.out);
+        Path file = report.write(Paths.get(config.getOutput()));
+        System.out.println("Results written to " + file);
+    }
+
+    LoadTestReport run() throws Exception {
+        try {
+            this.openSessions();
+            System.out.printf("Warming up for %ds at %d req/s%n", this.config.getWarmup().getSeconds(), this.config.getRate());
+            this.drive(this.config.getWarmup().toNanos());
+            this.stats.values().forEach(OperationStats::reset);
+
+            System.out.printf("Measuring for %ds at %d req/s%n", this.config.getDuration().getSeconds(), this.config.getRate());
+            long start = System.nanoTime();
+            this.drive(this.config.getDuration().toNanos());
+            long elapsedNanos = System.nanoTime() - start;
+            return new LoadTestReport(this.config, this.stats, elapsedNanos);
+        } finally {
+            this.workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Los logins iniciales no se miden. Cada uno es un BCrypt: van en paralelo, pero no más que los hilos
+     * de BCrypt de la aplicación (uno por núcleo, ver LoginExecutor). Si todos esperaran a la vez en su cola,
+     * en una máquina con pocos núcleos vencería app.security.login.timeout y responderían 503.
+     */
+    private void openSessions() throws Exception {
+        //user0..admins-1 tienen ROLE_ADMIN (ver LoadTestData), las demás sesiones son usuarios comunes
+        List<Session> opened = new ArrayList<>();
+        for (int i = 0; i < this.config.getAdmins() + this.config.getSessions(); i++) {
+            opened.add(new Session(LoadTestData.username(i)));
+        }
+        ExecutorService loginPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                new CustomizableThreadFactory("loadtest-login-"));
+        try {
+            List<Future<Integer>> logins = new ArrayList<>();
+            for (Session session : opened) {
+                logins.add(loginPool.submit(() -> this.login(session)));
+            }
+            for (Future<Integer> login : logins) {
+                login.get(); //Si algún login falla no tiene sentido seguir
+            }
+        } finally {
+            loginPool.shutdownNow();
+        }
+        this.adminSessions.addAll(opened.subList(0, this.config.getAdmins()));
+        this.sessions.addAll(opened.subList(this.config.getAdmins(), opened.size()));
+    }
+
+    /**
+     * Envía solicitudes a la tasa configurada durante durationNanos y espera a que terminen.
+     */
+    private void drive(long durationNanos) throws InterruptedException {
+        long interval = TimeUnit.SECONDS.toNanos(1) / this.config.getRate();
+        long start = System.nanoTime();
+        for (long i = 0; ; i++) {
+            long intended = start + i * interval;
+            if (intended - start >= durationNanos) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = this.schedule[ThreadLocalRandom.current().nextInt(this.schedule.length)];
+            this.inFlight.incrementAndGet();
+            this.workers.execute(() -> this.execute(operation, intended));
+        }
+        long deadline = System.nanoTime() + DRAIN_TIMEOUT_NANOS;
+        while (this.inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void execute(Operation operation, long intendedStartNanos) {
+        BlockingQueue<Session> queue = operation == Operation.ASSIGN_ROLES ? this.adminSessions : this.sessions;
+        Session session = null;
+        int status;
+        try {
+            session = queue.take();
+            this.ensureFreshToken(session);
+            status = this.perform(operation, session);
+        } catch (IOException e) {
+            status = OperationStats.NO_RESPONSE;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            if (session != null) {
+                queue.add(session);
+            }
+            this.inFlight.decrementAndGet();
+        }
+        this.stats.get(operation).record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStartNanos), status);
+    }
+
+    private int perform(Operation operation, Session session) throws IOException {
+        switch (operation) {
+            case LOGIN:
+                return this.client.login(session.getUsername(), LoadTestData.PASSWORD).getStatus();
+            case REFRESH:
+                return this.refresh(session);
+            case LIST_USERS:
+                ApiClient.Response response = this.client.listUsers(session.getAccessToken(), session.getUsersETag());
+                if (response.getStatus() == 200) {
+                    session.setUsersETag(response.getETag());
+                }
+                return response.getStatus();
+            case ASSIGN_ROLES:
+                return this.client.assignRoles(session.getAccessToken(), this.randomAssignment()).getStatus();
+            default:
+                throw new IllegalStateException("Unknown operation " + operation);
+        }
+    }
+
+    //Otorga o quita (al azar) un rol extra a un usuario al azar
+    private String randomAssignment() throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int extraRoles = LoadTestData.extraRoles(this.config);
+        String roleName = extraRoles > 0 ? LoadTestData.EXTRA_ROLE_PREFIX + random.nextInt(extraRoles) : "ROLE_USER";
+        //Nunca a los administradores, que podrían perder ROLE_ADMIN... o ROLE_USER
+        int user = this.config.getAdmins() + random.nextInt(Math.max(1, this.config.getUsers() - this.config.getAdmins()));
+        RoleAssignmentRequest request = new RoleAssignmentRequest();
+        RoleAssignment assignment = new RoleAssignment(LoadTestData.username(user), roleName);
+        if (random.nextBoolean() || "ROLE_USER".equals(roleName)) {
+            request.getGrants().add(assignment);
+        } else {
+            request.getRevokes().add(assignment);
+        }
+        return this.objectMapper.writeValueAsString(request);
+    }
+
+    private void ensureFreshToken(Session session) throws IOException, InterruptedException {
+        if (System.nanoTime() - session.getIssuedAtNanos() > ACCESS_TOKEN_REFRESH_NANOS && this.refresh(session) != 200) {
+            this.login(session);
+        }
+    }
+
+    private int login(Session session) throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            ApiClient.Response response = this.client.login(session.getUsername(), LoadTestData.PASSWORD);
+            if (response.getStatus() == 200) {
+                this.updateTokens(session, response);
+                return response.getStatus();
+            }
+            if (response.getStatus() != 503 || attempt == MAX_LOGIN_ATTEMPTS) {
+                throw new IllegalStateException("Login of " + session.getUsername() + " failed with status "
+                        + response.getStatus() + " after " + attempt + " attempts");
+            }
+            TimeUnit.SECONDS.sleep(retryAfterSeconds(response));
+        }
+    }
+
+    private static long retryAfterSeconds(ApiClient.Response response) {
+        try {
+            return response.getRetryAfter() == null ? 1 : Math.max(1, Long.parseLong(response.getRetryAfter().trim()));
+        } catch (NumberFormatException e) {
+            return 1; //Retry-After también puede ser una fecha, nuestro servidor siempre envía segundos
+        }
+    }
+
+    //Cada refresh_token se puede usar una sola vez, la sesión se queda con el nuevo
+    private int refresh(Session session) throws IOException {
+        ApiClient.Response response = this.client.refresh(session.getRefreshToken());
+        if (response.getStatus() == 200) {
+            this.updateTokens(session, response);
+        }
+        return response.getStatus();
+    }
+
+    private void updateTokens(Session session, ApiClient.Response response) throws IOException {
+        JsonNode tokens = this.client.json(response);
+        session.setAccessToken(tokens.get("access_token").asText());
+        session.setRefreshToken(tokens.get("refresh_token").asText());
+        session.setIssuedAtNanos(System.nanoTime());
+    }
+
+}
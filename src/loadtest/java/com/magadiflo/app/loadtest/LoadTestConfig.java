@@ -0,0 +1,101 @@
+package com.magadiflo.app.loadtest;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Opciones del load test, como argumentos --nombre=valor (ver README).
+ */
+@Getter
+class LoadTestConfig {
+
+    private int users = 1000;
+    private int roles = 10;
+    private int admins = 20;
+    private int sessions = 200;
+    private int rate = 200;
+    private int threads = 64;
+    private Duration warmup = Duration.ofSeconds(10);
+    private Duration duration = Duration.ofSeconds(60);
+    private Map<Operation, Integer> mix = parseMix("login=1,refresh=1,users=7,assign=1");
+    private String output = "target/loadtest";
+    //URL de una aplicación ya levantada (ej. la variante reactiva); sin ella se arranca y se siembra la aplicación servlet
+    private String target;
+
+    static LoadTestConfig parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Invalid option " + arg + ", expected --name=value");
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        LoadTestConfig config = new LoadTestConfig();
+        config.users = intOption(options, "users", config.users);
+        config.roles = Math.max(2, intOption(options, "roles", config.roles)); //ROLE_USER y ROLE_ADMIN siempre existen
+        config.admins = Math.max(1, intOption(options, "admins", config.admins));
+        config.rate = intOption(options, "rate", config.rate);
+        config.threads = intOption(options, "threads", config.threads);
+        //Al menos una sesión por hilo, así ningún hilo espera a que otro devuelva una
+        config.sessions = Math.max(config.threads, intOption(options, "sessions", config.sessions));
+        if (config.users < config.admins + config.sessions) {
+            throw new IllegalArgumentException("users must be at least admins + sessions (" + (config.admins + config.sessions) + ")");
+        }
+        config.warmup = durationOption(options, "warmup", config.warmup);
+        config.duration = durationOption(options, "duration", config.duration);
+        if (options.containsKey("mix")) {
+            config.mix = parseMix(options.remove("mix"));
+        }
+        if (options.containsKey("output")) {
+            config.output = options.remove("output");
+        }
+        if (options.containsKey("target")) {
+            config.target = options.remove("target");
+        }
+        if (!options.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options " + options.keySet());
+        }
+        return config;
+    }
+
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.remove(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    //10s, 2m, o en formato ISO-8601 (PT30S)
+    private static Duration durationOption(Map<String, String> options, String name, Duration defaultValue) {
+        String value = options.remove(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.parse(value);
+    }
+
+    //Peso de cada operación, por ejemplo login=1,refresh=1,users=7,assign=1
+    private static Map<Operation, Integer> parseMix(String value) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String entry : value.split(",")) {
+            String[] parts = entry.split("=");
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                mix.put(Operation.fromName(parts[0].trim()), weight);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("The mix must include at least one operation");
+        }
+        return mix;
+    }
+
+}
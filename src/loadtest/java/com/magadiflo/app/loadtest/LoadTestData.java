@@ -0,0 +1,76 @@
+package com.magadiflo.app.loadtest;
+
+import com.magadiflo.app.domain.Role;
+import com.magadiflo.app.domain.User;
+import com.magadiflo.app.dto.RoleAssignment;
+import com.magadiflo.app.dto.RoleAssignmentRequest;
+import com.magadiflo.app.repository.IUserRepository;
+import com.magadiflo.app.service.IUserService;
+import org.springframework.context.ApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Crea los roles y usuarios del load test en la BD embebida.
+ * Todos los usuarios comparten la misma contraseña, así se calcula un solo BCrypt al sembrar
+ * (el login sí paga su BCrypt completo en cada solicitud, que es lo que se quiere medir).
+ * Los primeros "admins" usuarios tienen ROLE_ADMIN: son los que hacen las asignaciones de roles.
+ */
+class LoadTestData {
+
+    static final String PASSWORD = "loadtest-password";
+    static final String EXTRA_ROLE_PREFIX = "ROLE_LOADTEST_";
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private LoadTestData() {
+    }
+
+    static String username(int index) {
+        return "user" + index;
+    }
+
+    //Roles además de ROLE_USER y ROLE_ADMIN
+    static int extraRoles(LoadTestConfig config) {
+        return config.getRoles() - 2;
+    }
+
+    static void seed(ApplicationContext context, LoadTestConfig config) {
+        IUserService userService = context.getBean(IUserService.class);
+        IUserRepository userRepository = context.getBean(IUserRepository.class);
+        TransactionTemplate transactionTemplate = context.getBean(TransactionTemplate.class);
+        String hash = context.getBean(PasswordEncoder.class).encode(PASSWORD);
+
+        userService.saveRole(new Role(null, "ROLE_USER"));
+        userService.saveRole(new Role(null, "ROLE_ADMIN"));
+        for (int i = 0; i < extraRoles(config); i++) {
+            userService.saveRole(new Role(null, EXTRA_ROLE_PREFIX + i));
+        }
+
+        for (int start = 0; start < config.getUsers(); start += CHUNK_SIZE) {
+            List<User> users = new ArrayList<>(CHUNK_SIZE);
+            for (int i = start; i < Math.min(config.getUsers(), start + CHUNK_SIZE); i++) {
+                users.add(new User(null, "Load test " + i, username(i), hash, new ArrayList<>()));
+            }
+            transactionTemplate.executeWithoutResult(status -> userRepository.saveAll(users));
+        }
+
+        for (int start = 0; start < config.getUsers(); start += CHUNK_SIZE) {
+            RoleAssignmentRequest request = new RoleAssignmentRequest();
+            for (int i = start; i < Math.min(config.getUsers(), start + CHUNK_SIZE); i++) {
+                request.getGrants().add(new RoleAssignment(username(i), "ROLE_USER"));
+                if (i < config.getAdmins()) {
+                    request.getGrants().add(new RoleAssignment(username(i), "ROLE_ADMIN"));
+                }
+                if (extraRoles(config) > 0) {
+                    request.getGrants().add(new RoleAssignment(username(i), EXTRA_ROLE_PREFIX + (i % extraRoles(config))));
+                }
+            }
+            userService.assignRoles(request);
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.magadiflo.app.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.HdrHistogram.Histogram;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resultado de una ejecución: una tabla en la consola y un JSON en output (loadtest-<fecha>-<commit>.json)
+ * con la configuración, los percentiles de cada endpoint y el histograma HDR completo (comprimido, en Base64),
+ * que se puede volver a cargar con Histogram.decodeFromCompressedByteBuffer para comparar entre commits.
+ */
+class LoadTestReport {
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+
+    private final LoadTestConfig config;
+    private final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+    private final Map<Operation, OperationStats> stats;
+    private final double elapsedSeconds;
+    private final Instant finishedAt = Instant.now();
+
+    LoadTestReport(LoadTestConfig config, Map<Operation, OperationStats> stats, long elapsedNanos) {
+        this.config = config;
+        this.stats = stats;
+        this.elapsedSeconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        stats.forEach((operation, operationStats) -> this.histograms.put(operation, operationStats.histogram()));
+    }
+
+    void print(PrintStream out) {
+        out.printf("%n%-28s %9s %7s %9s %9s %9s %9s %9s %9s%n",
+                "endpoint", "count", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        this.histograms.forEach((operation, histogram) -> {
+            out.printf("%-28s %9d %7d %9.1f", operation.getEndpoint(), histogram.getTotalCount(),
+                    this.stats.get(operation).errors(), histogram.getTotalCount() / this.elapsedSeconds);
+            for (double percentile : PERCENTILES) {
+                out.printf(" %9.2f", millis(histogram.getValueAtPercentile(percentile)));
+            }
+            out.printf(" %9.2f%n", millis(histogram.getMaxValue()));
+        });
+    }
+
+    Path write(Path directory) throws IOException {
+        String commit = gitCommit();
+        ObjectNode root = new ObjectMapper().createObjectNode();
+        root.put("commit", commit);
+        root.put("finishedAt", this.finishedAt.toString());
+        root.put("elapsedSeconds", this.elapsedSeconds);
+
+        ObjectNode configNode = root.putObject("config");
+        configNode.put("users", this.config.getUsers());
+        configNode.put("roles", this.config.getRoles());
+        configNode.put("admins", this.config.getAdmins());
+        configNode.put("sessions", this.config.getSessions());
+        configNode.put("rate", this.config.getRate());
+        configNode.put("threads", this.config.getThreads());
+        configNode.put("warmup", this.config.getWarmup().toString());
+        configNode.put("duration", this.config.getDuration().toString());
+        configNode.put("target", this.config.getTarget());
+        ObjectNode mixNode = configNode.putObject("mix");
+        this.config.getMix().forEach((operation, weight) -> mixNode.put(operation.getOptionName(), weight));
+
+        ArrayNode endpoints = root.putArray("endpoints");
+        this.histograms.forEach((operation, histogram) -> {
+            ObjectNode node = endpoints.addObject();
+            node.put("operation", operation.getOptionName());
+            node.put("endpoint", operation.getEndpoint());
+            node.put("count", histogram.getTotalCount());
+            node.put("errors", this.stats.get(operation).errors());
+            node.put("throughput", histogram.getTotalCount() / this.elapsedSeconds);
+            ObjectNode statuses = node.putObject("statuses");
+            this.stats.get(operation).statuses().forEach((status, count) -> statuses.put(String.valueOf(status), count));
+            ObjectNode latency = node.putObject("latencyMs");
+            latency.put("p50", millis(histogram.getValueAtPercentile(50.0)));
+            latency.put("p90", millis(histogram.getValueAtPercentile(90.0)));
+            latency.put("p99", millis(histogram.getValueAtPercentile(99.0)));
+            latency.put("p999", millis(histogram.getValueAtPercentile(99.9)));
+            latency.put("max", millis(histogram.getMaxValue()));
+            latency.put("mean", histogram.getMean() / 1000.0);
+            node.put("histogram", encode(histogram));
+        });
+
+        Files.createDirectories(directory);
+        Path file = directory.resolve("loadtest-" + FILE_TIMESTAMP.format(this.finishedAt) + "-" + commit + ".json");
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), root);
+        return file;
+    }
+
+    //Los valores del histograma están en microsegundos
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static String encode(Histogram histogram) {
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length));
+    }
+
+    //Si no hay git (o no es un repositorio) el archivo igual se escribe, como "unknown"
+    private static String gitCommit() {
+        try {
+            Process process = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line = reader.readLine();
+                if (process.waitFor() == 0 && line != null && !line.trim().isEmpty()) {
+                    return line.trim();
+                }
+            }
+        } catch (IOException e) {
+            //Sin git
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "unknown";
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.magadiflo.app.loadtest;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Operaciones del tráfico mixto, con el nombre que se usa en --mix y en el reporte.
+ */
+@Getter
+@RequiredArgsConstructor
+enum Operation {
+
+    LOGIN("login", "POST /api/login"),
+    REFRESH("refresh", "GET /api/token/refresh"),
+    LIST_USERS("users", "GET /api/users"),
+    ASSIGN_ROLES("assign", "POST /api/role/assignments");
+
+    private final String optionName;
+    private final String endpoint;
+
+    static Operation fromName(String name) {
+        for (Operation operation : values()) {
+            if (operation.optionName.equals(name)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation " + name);
+    }
+
+}
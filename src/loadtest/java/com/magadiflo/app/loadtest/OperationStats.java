@@ -0,0 +1,53 @@
+package com.magadiflo.app.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencias (en microsegundos, histograma HDR con 3 dígitos significativos) y códigos de respuesta
+ * de una operación. Recorder permite que todos los hilos registren sin bloquearse entre sí.
+ */
+class OperationStats {
+
+    //Estado -1: la solicitud ni siquiera obtuvo respuesta (IOException)
+    static final int NO_RESPONSE = -1;
+
+    private final Recorder recorder = new Recorder(3);
+    private final ConcurrentHashMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    private final LongAdder errors = new LongAdder();
+
+    void record(long latencyMicros, int status) {
+        this.recorder.recordValue(Math.max(1, latencyMicros));
+        this.statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+        if (status != 200 && status != 304) {
+            this.errors.increment();
+        }
+    }
+
+    //Descarta lo registrado hasta ahora (el calentamiento)
+    void reset() {
+        this.recorder.reset();
+        this.statuses.clear();
+        this.errors.reset();
+    }
+
+    Histogram histogram() {
+        return this.recorder.getIntervalHistogram();
+    }
+
+    long errors() {
+        return this.errors.sum();
+    }
+
+    Map<Integer, Long> statuses() {
+        Map<Integer, Long> counts = new TreeMap<>();
+        this.statuses.forEach((status, count) -> counts.put(status, count.sum()));
+        return counts;
+    }
+
+}
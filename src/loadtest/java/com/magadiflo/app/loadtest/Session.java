@@ -0,0 +1,24 @@
+package com.magadiflo.app.loadtest;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Un usuario con sesión iniciada. Cada sesión la usa un solo hilo a la vez (ver LoadTest.sessions).
+ */
+@Getter
+@Setter
+class Session {
+
+    private final String username;
+    private String accessToken;
+    private String refreshToken;
+    private long issuedAtNanos;
+    //Último ETag de GET /api/users, para enviarlo en If-None-Match como lo haría un navegador
+    private String usersETag;
+
+    Session(String username) {
+        this.username = username;
+    }
+
+}
@@ -0,0 +1,27 @@
+-- Lo que en MySQL crea Flyway y no corresponde a ninguna entidad (ver V2__data_version.sql)
+create table if not exists data_version (
+    id      integer not null,
+    version bigint  not null,
+    primary key (id)
+);
+
+merge into data_version (id, version) key (id) values (1, 0);
+
+-- Ver V4__change_log.sql
+create table if not exists change_log (
+    id          bigint       not null auto_increment,
+    entity_type varchar(16)  not null,
+    entity_key  varchar(255) not null,
+    created_at  timestamp(6) not null default current_timestamp(6),
+    primary key (id)
+);
+create index if not exists idx_change_log_created_at on change_log (created_at);
+
+-- Ver V5__password_hash_policy.sql
+create table if not exists password_hash_policy (
+    id       integer not null,
+    strength integer,
+    primary key (id)
+);
+
+merge into password_hash_policy (id, strength) key (id) values (1, null);
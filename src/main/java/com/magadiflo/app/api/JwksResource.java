@@ -0,0 +1,31 @@
+package com.magadiflo.app.api;
+
+import com.magadiflo.app.security.JwtKeyManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Publica las claves públicas con las que se firman los tokens (JWKS), para que el gateway
+ * y los demás servicios verifiquen los tokens localmente, sin llamar a este servicio.
+ * Pueden guardarlo en caché durante jwks-max-age: una clave nueva se publica ese tiempo
+ * antes de empezar a firmar con ella.
+ */
+@RequiredArgsConstructor
+@RestController
+public class JwksResource {
+
+    private final JwtKeyManager keyManager;
+
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<Map<String, Object>> getJwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(this.keyManager.getJwksMaxAge()).cachePublic())
+                .body(this.keyManager.getJwks());
+    }
+
+}
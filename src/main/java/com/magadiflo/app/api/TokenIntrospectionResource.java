@@ -0,0 +1,40 @@
+package com.magadiflo.app.api;
+
+import com.magadiflo.app.dto.TokenIntrospectionRequest;
+import com.magadiflo.app.dto.TokenIntrospectionResult;
+import com.magadiflo.app.security.TokenIntrospector;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Para que el gateway valide en una sola llamada los tokens de todas las solicitudes que tiene
+ * en curso hacia otros servicios, en lugar de una llamada por solicitud.
+ * Requiere un access token con el rol ROLE_GATEWAY (ver SecurityConfig).
+ */
+@RequiredArgsConstructor
+@RestController
+public class TokenIntrospectionResource {
+
+    private final TokenIntrospector tokenIntrospector;
+
+    @PostMapping("/api/token/introspect")
+    public ResponseEntity<List<TokenIntrospectionResult>> introspect(@RequestBody TokenIntrospectionRequest request) {
+        List<String> tokens = request.getTokens() == null ? Collections.emptyList() : request.getTokens();
+        if (tokens.size() > this.tokenIntrospector.getMaxBatchSize()) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "At most " + this.tokenIntrospector.getMaxBatchSize() + " tokens per request");
+        }
+        //Contiene datos de los usuarios: no debe quedar en cachés intermedias
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(this.tokenIntrospector.introspect(tokens));
+    }
+
+}
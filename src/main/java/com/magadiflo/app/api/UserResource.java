@@ -4,14 +4,28 @@ package com.magadiflo.app.api;
 //también podría haber sido llamado UserController
 
 
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.JWTVerifier;
-import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.magadiflo.app.domain.Role;
 import com.magadiflo.app.domain.User;
+import com.magadiflo.app.dto.RoleAssignmentRequest;
+import com.magadiflo.app.dto.RoleAssignmentResult;
+import com.magadiflo.app.dto.UserCredentials;
+import com.magadiflo.app.dto.UserImportResult;
+import com.magadiflo.app.dto.UserSearchPage;
+import com.magadiflo.app.repository.IUserSearchRepository.SearchField;
+import com.magadiflo.app.security.JwtTokenProvider;
+import com.magadiflo.app.security.RevocationStore;
+import com.magadiflo.app.security.TokenResponseWriter;
+import com.magadiflo.app.service.DataVersion;
 import com.magadiflo.app.service.IUserService;
+import com.magadiflo.app.service.ListingCache;
+import com.magadiflo.app.service.UserImportService;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpHeaders;
@@ -23,14 +37,17 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
 @RestController
@@ -38,12 +55,97 @@ import java.util.stream.Collectors;
 public class UserResource {
 
     private static final String BEARER = "Bearer ";
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int STREAM_FLUSH_EVERY = 500;
 
     private final IUserService userService;
+    private final UserImportService userImportService;
+    private final JwtTokenProvider tokenProvider;
+    private final ObjectMapper objectMapper;
+    private final TokenResponseWriter tokenResponseWriter;
+    private final RevocationStore revocationStore;
+    private final DataVersion dataVersion;
+    private final ListingCache listingCache;
 
+    /**
+     * Paginación por cursor: after es el id del último usuario recibido (0 para la primera página)
+     * y limit la cantidad de usuarios por página (máximo 500).
+     * ETag: la versión de los datos (DataVersion). Si el cliente envía If-None-Match con la versión
+     * actual respondemos 304 sin consultar la BD; si no, la página sale ya serializada de ListingCache
+     */
     @GetMapping("/users")
-    public ResponseEntity<List<User>> getUsers() {
-        return ResponseEntity.ok().body(this.userService.getUsers());//Código de respuesta 200: ok
+    public ResponseEntity<byte[]> getUsers(@RequestParam(defaultValue = "0") long after,
+                                           @RequestParam(defaultValue = "50") int limit,
+                                           WebRequest webRequest) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        long version = this.dataVersion.current();
+        String eTag = eTag(version);
+        if (webRequest.checkNotModified(eTag)) {
+            return null; //Spring ya respondió 304 Not Modified con el ETag
+        }
+        return ResponseEntity.ok().eTag(eTag).contentType(MediaType.APPLICATION_JSON)
+                .body(this.listingCache.getUsers(version, after, pageSize));//Código de respuesta 200: ok
+    }
+
+    /**
+     * Búsqueda por prefijo, sin distinguir mayúsculas, del username (by=username) o del nombre (by=name),
+     * opcionalmente solo entre los usuarios con el rol role. after es el nextCursor de la página anterior.
+     * Ej.: /api/users/search?q=mag&role=ROLE_ADMIN&limit=20
+     */
+    @GetMapping("/users/search")
+    public ResponseEntity<UserSearchPage> searchUsers(@RequestParam(defaultValue = "") String q,
+                                                      @RequestParam(defaultValue = "username") String by,
+                                                      @RequestParam(required = false) String role,
+                                                      @RequestParam(required = false) String after,
+                                                      @RequestParam(defaultValue = "50") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        try {
+            SearchField field = SearchField.valueOf(by.toUpperCase(Locale.ROOT));
+            return ResponseEntity.ok().body(this.userService.searchUsers(field, q.trim(), role, after, pageSize));
+        } catch (IllegalArgumentException e) { //by desconocido o cursor inválido
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    //Igual que /users: ETag con la versión de los datos y el JSON ya serializado
+    @GetMapping("/roles")
+    public ResponseEntity<byte[]> getRoles(WebRequest webRequest) {
+        long version = this.dataVersion.current();
+        String eTag = eTag(version);
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(eTag).contentType(MediaType.APPLICATION_JSON)
+                .body(this.listingCache.getRoles(version));
+    }
+
+    /**
+     * Si el cliente envía Accept: application/x-ndjson, devolvemos todos los usuarios,
+     * uno por línea, escribiéndolos en la respuesta a medida que se leen de la BD.
+     * Así la memoria se mantiene constante sin importar el tamaño de la tabla.
+     */
+    @GetMapping(value = "/users", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamUsers() {
+        ObjectWriter writer = this.objectMapper.writerFor(User.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = outputStream -> {
+            JsonGenerator generator = this.objectMapper.getFactory().createGenerator(outputStream);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            int[] count = {0};
+            this.userService.streamUsers(user -> {
+                try {
+                    writer.writeValue(generator, user);
+                    generator.writeRaw('\n');
+                    if (++count[0] % STREAM_FLUSH_EVERY == 0) {
+                        generator.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.close();
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE)).body(body);
     }
 
     @PostMapping("/user/save")
@@ -52,6 +154,21 @@ public class UserResource {
         return ResponseEntity.created(uri).body(this.userService.saveUser(user)); //Código de respuesta 201: created
     }
 
+    /**
+     * Importación masiva: recibe un arreglo JSON de usuarios (igual que /user/save)
+     * y devuelve el resultado de cada fila (CREATED, REJECTED o FAILED)
+     */
+    @PostMapping(value = "/users/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<UserImportResult>> importUsers(@RequestBody List<User> users) {
+        return ResponseEntity.ok().body(this.userImportService.importUsers(users));
+    }
+
+    //Lo mismo pero con un CSV (name,username,password) que se va leyendo a medida que llega
+    @PostMapping(value = "/users/import", consumes = "text/csv")
+    public ResponseEntity<List<UserImportResult>> importUsersCsv(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok().body(this.userImportService.importCsv(request.getInputStream()));
+    }
+
     @PostMapping("/role/save")
     public ResponseEntity<Role> saveRole(@RequestBody Role role) {
         URI uri = URI.create(ServletUriComponentsBuilder.fromCurrentContextPath().path("/api/role/save").toUriString());
@@ -64,6 +181,15 @@ public class UserResource {
         return ResponseEntity.ok().build(); //Como no vamos a enviar respuesta en el body(), solo una respuesta de OK, llamamos al build() para que construya la respuesta
     }
 
+    /**
+     * Asignación y remoción masiva de roles en una sola transacción.
+     * Reemplaza llamar a /role/addtouser una vez por cada par (usuario, rol)
+     */
+    @PostMapping("/role/assignments")
+    public ResponseEntity<RoleAssignmentResult> assignRoles(@RequestBody RoleAssignmentRequest request) {
+        return ResponseEntity.ok().body(this.userService.assignRoles(request));
+    }
+
     /**
      * Cuando el refresh token caduque se le solicitará al usuario
      * volver iniciar sesión. El tiempo de vida de un refresh token
@@ -78,42 +204,73 @@ public class UserResource {
         if (authorizationHeader != null && authorizationHeader.startsWith(BEARER)) {
             try {
                 String refresh_token = authorizationHeader.substring(BEARER.length());
-                Algorithm algorithm = Algorithm.HMAC256("secret".getBytes());
-                JWTVerifier verifier = JWT.require(algorithm).build();
-                DecodedJWT decodedJWT = verifier.verify(refresh_token);
+                DecodedJWT decodedJWT = this.tokenProvider.verifyRefreshToken(refresh_token);
                 String username = decodedJWT.getSubject();
 
-                User user = this.userService.getUser(username);
-
-                List<String> roles = user.getRoles().stream().map(Role::getName).collect(Collectors.toList());
-                String access_token = JWT.create()
-                        .withSubject(user.getUsername())
-                        .withExpiresAt(new Date(System.currentTimeMillis() + 10 * 60 * 1000))
-                        .withIssuer(request.getRequestURL().toString())
-                        .withClaim("roles", roles)
-                        .sign(algorithm);
+                //Cada refresh_token se puede usar una sola vez: se marca como usado (en la BD, así vale
+                //para todas las instancias) y se entrega uno nuevo junto con el nuevo access_token
+                if (decodedJWT.getId() == null || !this.revocationStore.revoke(decodedJWT.getId(), decodedJWT.getExpiresAt())) {
+                    throw new RuntimeException("The refresh token has already been used or revoked");
+                }
 
-                Map<String, String> tokens = new HashMap<>();
-                tokens.put("access_token", access_token);
-                tokens.put("refresh_token", refresh_token);
-                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
-                new ObjectMapper().writeValue(response.getOutputStream(), tokens);
+                //Solo necesitamos el nombre de usuario y sus roles, no la entidad completa
+                UserCredentials credentials = this.userService.getUserCredentials(username);
+                if (credentials == null) {
+                    throw new RuntimeException("User not found");
+                }
 
-            } catch (Exception e) {
-                response.setHeader("error", e.getMessage());
-                response.setStatus(HttpStatus.FORBIDDEN.value());
+                String issuer = request.getRequestURL().toString();
+                String access_token = this.tokenProvider.createAccessToken(credentials.getUsername(), credentials.getRoles(), issuer);
+                String new_refresh_token = this.tokenProvider.createRefreshToken(credentials.getUsername(), issuer);
 
-                Map<String, String> error = new HashMap<>();
-                error.put("error_message", e.getMessage());
-                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                this.tokenResponseWriter.writeTokens(response, access_token, new_refresh_token);
 
-                new ObjectMapper().writeValue(response.getOutputStream(), error);
+            } catch (Exception e) {
+                this.tokenResponseWriter.writeError(response, HttpStatus.FORBIDDEN, e.getMessage());
             }
         } else {
             throw new RuntimeException("Refresh Token is missing");
         }
     }
 
+    /**
+     * Revoca el access_token con el que se hace la solicitud y, si se envía, también el refresh_token.
+     * Los tokens revocados se rechazan en todas las instancias (en las demás, a más tardar
+     * después de app.security.revocation.sync-interval)
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(HttpServletRequest request, @RequestBody(required = false) LogoutRequest logoutRequest) {
+        String authorizationHeader = request.getHeader(HttpHeaders.AUTHORIZATION);
+        DecodedJWT accessToken = this.tokenProvider.verifyAccessToken(authorizationHeader.substring(BEARER.length()));
+        this.revokeToken(accessToken);
+
+        if (logoutRequest != null && logoutRequest.getRefreshToken() != null) {
+            DecodedJWT refreshToken;
+            try {
+                refreshToken = this.tokenProvider.verifyRefreshToken(logoutRequest.getRefreshToken());
+            } catch (JWTVerificationException e) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+            //Solo el dueño del refresh_token puede revocarlo
+            if (!refreshToken.getSubject().equals(accessToken.getSubject())) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+            }
+            this.revokeToken(refreshToken);
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    private void revokeToken(DecodedJWT token) {
+        if (token.getId() != null) {
+            this.revocationStore.revoke(token.getId(), token.getExpiresAt());
+        }
+    }
+
+    //ETag fuerte: el mismo JSON byte a byte mientras no cambie la versión
+    private static String eTag(long version) {
+        return "\"v" + version + "\"";
+    }
+
 }
 
 //Según los otros tutoriales llevados,
@@ -124,3 +281,9 @@ class RoleToUserFrom {
     private String username;
     private String roleName;
 }
+
+@Data
+class LogoutRequest {
+    @JsonProperty("refresh_token")
+    private String refreshToken;
+}
@@ -0,0 +1,56 @@
+package com.magadiflo.app.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Envía las transacciones @Transactional(readOnly = true) a la réplica y todo lo demás a la primaria.
+ * Si no hay réplica configurada, o no se puede obtener una conexión de ella, se usa la primaria.
+ * Debe usarse detrás de un LazyConnectionDataSourceProxy: Spring marca la transacción como
+ * readOnly después de pedir la conexión, así que la decisión se toma al ejecutar la primera sentencia.
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractDataSource {
+
+    private final DataSource primary;
+    private final DataSource replica;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica) {
+        this.primary = primary;
+        this.replica = replica;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (this.useReplica()) {
+            try {
+                return this.replica.getConnection();
+            } catch (SQLException e) {
+                log.warn("Replica unavailable, reading from the primary: {}", e.getMessage());
+            }
+        }
+        return this.primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (this.useReplica()) {
+            try {
+                return this.replica.getConnection(username, password);
+            } catch (SQLException e) {
+                log.warn("Replica unavailable, reading from the primary: {}", e.getMessage());
+            }
+        }
+        return this.primary.getConnection(username, password);
+    }
+
+    private boolean useReplica() {
+        return this.replica != null && TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+}
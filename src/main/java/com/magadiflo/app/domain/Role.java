@@ -3,6 +3,8 @@ package com.magadiflo.app.domain;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 
@@ -10,12 +12,28 @@ import javax.persistence.*;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "roles")
+//Único e indexado: IRolRepository.findByName se usa al asignar roles (V3__user_search_indexes.sql)
+@Table(name = "roles", uniqueConstraints = @UniqueConstraint(name = "uk_roles_name", columnNames = "name"))
+//Tabla pequeña y que casi no cambia: se guarda en la caché de segundo nivel (región roles, ver application.conf)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "roles")
 public class Role {
 
+    //Generador "pooled": reserva 50 ids por cada viaje a la BD (en MySQL se emula con la tabla roles_seq)
+    //y, a diferencia de IDENTITY, permite que Hibernate agrupe los inserts en batches JDBC
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "roles_seq")
+    @SequenceGenerator(name = "roles_seq", sequenceName = "roles_seq", allocationSize = 50)
     private Long id;
     private String name;
+    //Posición del rol en la máscara de bits del claim "rm" de los access token (ver RoleRegistry).
+    //Se asigna al crear el rol y nunca cambia
+    @Column(name = "bit_index", unique = true)
+    private Integer bitIndex;
+
+    public Role(Long id, String name) {
+        this.id = id;
+        this.name = name;
+    }
 
 }
@@ -0,0 +1,34 @@
+package com.magadiflo.app.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * Par de claves RSA con el que se firman los tokens (RS256).
+ * Se guardan en la BD para que todas las instancias de la aplicación firmen y verifiquen
+ * con las mismas claves. Las claves van codificadas en Base64 (X.509 la pública, PKCS#8 la privada).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "signing_keys")
+public class SigningKey {
+
+    @Id
+    @Column(length = 64)
+    private String kid;
+    @Lob
+    @Column(nullable = false)
+    private String publicKey;
+    @Lob
+    @Column(nullable = false)
+    private String privateKey;
+    @Column(nullable = false)
+    private Instant createdAt;
+
+}
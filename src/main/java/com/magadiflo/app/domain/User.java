@@ -3,6 +3,10 @@ package com.magadiflo.app.domain;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -28,17 +32,38 @@ Spring ya tiene definido. En nuestro caso tendremos cuidado.
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "users")
+//idx_users_name: búsqueda por prefijo del nombre (IUserSearchRepository)
+@Table(name = "users", indexes = @Index(name = "idx_users_name", columnList = "name"))
+//Caché de segundo nivel: la entidad, su colección de roles y la búsqueda por username (natural id).
+//Cada región tiene un nombre corto que se configura en application.conf
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users")
+@NaturalIdCache(region = "users-natural-id")
 public class User {
 
+    //Generador "pooled": reserva 50 ids por cada viaje a la BD (en MySQL se emula con la tabla users_seq)
+    //y, a diferencia de IDENTITY, permite que Hibernate agrupe los inserts en batches JDBC
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
     private String name;
+    //El username identifica al usuario y no cambia: Hibernate puede buscar por él en la caché
+    //(ver IUserNaturalIdRepository) sin ir a la BD. También crea un índice único
+    @NaturalId
     private String username;
     private String password;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    //LAZY: cada consulta decide si necesita los roles (join fetch / EntityGraph en IUserRepository),
+    //así evitamos el select adicional por cada usuario (problema N+1) que provocaba EAGER
+    //La tabla intermedia se declara explícitamente (son los mismos nombres que Spring generaba por defecto)
+    //porque la asignación masiva de roles escribe en ella directamente con JDBC
+    //Cuando la asignación masiva escribe con JDBC, UserServiceImpl saca esta colección de la caché
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user-roles")
+    @ManyToMany(fetch = FetchType.LAZY)
+    @JoinTable(name = "users_roles",
+            joinColumns = @JoinColumn(name = "user_id"),
+            inverseJoinColumns = @JoinColumn(name = "roles_id"))
     private Collection<Role> roles = new ArrayList<>();
 
 }
@@ -0,0 +1,27 @@
+package com.magadiflo.app.domain;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * users.username usa la collation utf8mb4_0900_ai_ci (V3__user_search_indexes.sql): no distingue mayúsculas
+ * ni acentos, así que para la restricción única "José", "JOSE" y "jose" son el mismo username.
+ * key() arma la clave con la que comparamos en memoria de la misma forma. Es una aproximación (la collation
+ * también iguala, por ejemplo, "ß" y "ss"): donde importa, la restricción única de la BD tiene la última palabra.
+ */
+public final class Usernames {
+
+    //Los acentos y diéresis que quedan separados de la letra después de la descomposición NFD
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private Usernames() {
+    }
+
+    //"José" -> "jose"
+    public static String key(String username) {
+        String decomposed = Normalizer.normalize(username, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+}
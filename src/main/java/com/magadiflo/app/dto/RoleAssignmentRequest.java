@@ -0,0 +1,22 @@
+package com.magadiflo.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Asignaciones (grants) y remociones (revokes) de roles que se aplican
+ * juntas en una sola transacción
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RoleAssignmentRequest {
+
+    private List<RoleAssignment> grants = new ArrayList<>();
+    private List<RoleAssignment> revokes = new ArrayList<>();
+
+}
@@ -0,0 +1,23 @@
+package com.magadiflo.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * granted y revoked cuentan solo las filas que realmente cambiaron
+ * (asignar un rol que el usuario ya tiene no cuenta).
+ * errors contiene las asignaciones con usuario o rol inexistente.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RoleAssignmentResult {
+
+    private int granted;
+    private int revoked;
+    private List<String> errors;
+
+}
@@ -0,0 +1,20 @@
+package com.magadiflo.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lote de access tokens que el gateway quiere validar en una sola llamada.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenIntrospectionRequest {
+
+    private List<String> tokens = new ArrayList<>();
+
+}
@@ -0,0 +1,35 @@
+package com.magadiflo.app.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Resultado de la introspección de un token, con los nombres de RFC 7662:
+ * active (válido, no expirado ni revocado), sub (username), exp (segundos desde epoch).
+ * Si el token no es válido solo se envían active=false y error.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TokenIntrospectionResult {
+
+    private boolean active;
+    private String sub;
+    private List<String> roles;
+    private Long exp;
+    private String error;
+
+    public static TokenIntrospectionResult active(String sub, List<String> roles, long exp) {
+        return new TokenIntrospectionResult(true, sub, roles, exp, null);
+    }
+
+    public static TokenIntrospectionResult inactive(String error) {
+        return new TokenIntrospectionResult(false, null, null, null, error);
+    }
+
+}
@@ -0,0 +1,19 @@
+package com.magadiflo.app.dto;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Datos mínimos que necesitan el login y el refresh token:
+ * usuario, contraseña (hash) y los nombres de sus roles.
+ * Es inmutable, así que se puede compartir entre hilos sin problemas.
+ */
+@Value
+public class UserCredentials {
+
+    String username;
+    String password;
+    List<String> roles;
+
+}
@@ -0,0 +1,15 @@
+package com.magadiflo.app.dto;
+
+/**
+ * Proyección de Spring Data: una fila por cada rol del usuario,
+ * solo con las columnas que necesita la autenticación.
+ */
+public interface UserCredentialsRow {
+
+    String getUsername();
+
+    String getPassword();
+
+    String getRoleName();
+
+}
@@ -0,0 +1,10 @@
+package com.magadiflo.app.dto;
+
+//Proyección de Spring Data: solo el id y el username del usuario
+public interface UserIdRow {
+
+    Long getId();
+
+    String getUsername();
+
+}
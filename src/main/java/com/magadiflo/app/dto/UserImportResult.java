@@ -0,0 +1,36 @@
+package com.magadiflo.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultado de cada fila de la importación masiva de usuarios.
+ * row es la posición de la fila en la solicitud (empieza en 1).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserImportResult {
+
+    public enum Status {CREATED, REJECTED, FAILED}
+
+    private int row;
+    private String username;
+    private Status status;
+    private Long id;
+    private String error;
+
+    public static UserImportResult created(int row, String username, Long id) {
+        return new UserImportResult(row, username, Status.CREATED, id, null);
+    }
+
+    public static UserImportResult rejected(int row, String username, String error) {
+        return new UserImportResult(row, username, Status.REJECTED, null, error);
+    }
+
+    public static UserImportResult failed(int row, String username, String error) {
+        return new UserImportResult(row, username, Status.FAILED, null, error);
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.magadiflo.app.dto;
+
+import com.magadiflo.app.domain.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Página de GET /api/users/search. nextCursor es opaco (codifica el campo de búsqueda y el id
+ * del último usuario), el cliente lo envía en el parámetro "after" para obtener la siguiente página.
+ * Si es null, ya no hay más resultados.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSearchPage {
+
+    private List<User> users;
+    private String nextCursor;
+
+}
@@ -1,15 +1,20 @@
 package com.magadiflo.app.filter;
 
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.algorithms.Algorithm;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.magadiflo.app.security.JwtTokenProvider;
+import com.magadiflo.app.security.LoginExecutor;
+import com.magadiflo.app.security.LoginRateLimiter;
+import com.magadiflo.app.security.LoginRejectedException;
+import com.magadiflo.app.security.SecurityMetrics;
+import com.magadiflo.app.security.TokenResponseWriter;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.MediaType;
+import org.slf4j.MDC;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
@@ -18,10 +23,7 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -31,9 +33,21 @@ public class CustomAuthenticationFilter extends UsernamePasswordAuthenticationFi
     //porque lo vamos a llamar para autenticar al usuario. Este parámetro está siendo
     //pasado por el constructor desde la clase SecurityConfig, ver el método configure(HttpSecurity http)
     private final AuthenticationManager authenticationManager;
+    private final JwtTokenProvider tokenProvider;
+    private final LoginRateLimiter loginRateLimiter;
+    private final LoginExecutor loginExecutor;
+    private final TokenResponseWriter tokenResponseWriter;
+    private final SecurityMetrics securityMetrics;
 
-    public CustomAuthenticationFilter(AuthenticationManager authenticationManager) {
+    public CustomAuthenticationFilter(AuthenticationManager authenticationManager, JwtTokenProvider tokenProvider,
+                                      LoginRateLimiter loginRateLimiter, LoginExecutor loginExecutor,
+                                      TokenResponseWriter tokenResponseWriter, SecurityMetrics securityMetrics) {
         this.authenticationManager = authenticationManager;
+        this.tokenProvider = tokenProvider;
+        this.loginRateLimiter = loginRateLimiter;
+        this.loginExecutor = loginExecutor;
+        this.tokenResponseWriter = tokenResponseWriter;
+        this.securityMetrics = securityMetrics;
     }
 
     //Método que se llamará cada vez que el usuario intente autenticarse
@@ -42,10 +56,35 @@ public class CustomAuthenticationFilter extends UsernamePasswordAuthenticationFi
             throws AuthenticationException {
         String username = request.getParameter("username");
         String password = request.getParameter("password");
-        log.info("Username is: {}", username);
-        log.info("Password is: {}", password);
-        UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(username, password);
-        return this.authenticationManager.authenticate(authenticationToken);
+        long start = System.nanoTime();
+        try {
+            //Antes de gastar un hash BCrypt verificamos que ni la IP ni el username hayan agotado sus intentos (429)
+            this.loginRateLimiter.checkAttempt(username, request.getRemoteAddr());
+            UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(username, password);
+            //La verificación de la contraseña se hace en un pool acotado (LoginExecutor) y no directamente en el hilo de Tomcat
+            Authentication authentication = this.loginExecutor.authenticate(() -> this.authenticationManager.authenticate(authenticationToken));
+            this.securityMetrics.recordLoginSuccess(start);
+            return authentication;
+        } catch (RuntimeException e) {
+            this.securityMetrics.recordLoginFailure(start, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Los rechazos por exceso de intentos o pool saturado se responden con su propio código (429 o 503)
+     * y la cabecera Retry-After, el resto de fallos siguen el flujo normal de Spring (401)
+     */
+    @Override
+    protected void unsuccessfulAuthentication(HttpServletRequest request, HttpServletResponse response,
+                                              AuthenticationException failed) throws IOException, ServletException {
+        if (!(failed instanceof LoginRejectedException)) {
+            super.unsuccessfulAuthentication(request, response, failed);
+            return;
+        }
+        SecurityContextHolder.clearContext();
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        this.tokenResponseWriter.writeError(response, ((LoginRejectedException) failed).getStatus(), failed.getMessage());
     }
 
     /**
@@ -58,20 +97,13 @@ public class CustomAuthenticationFilter extends UsernamePasswordAuthenticationFi
     protected void successfulAuthentication(HttpServletRequest request, HttpServletResponse response, FilterChain chain,
                                             Authentication authentication) throws IOException, ServletException {
         User user = (User) authentication.getPrincipal(); //Principio de obtención de autenticación devuelve el usuario que inicio sesión
-        Algorithm algorithm = Algorithm.HMAC256("secret".getBytes()); //Algoritmo para firmar el JWT y el Refresh Token
+        //Para la línea de RequestTimingFilter. Solo el username ya validado: el del formulario podría ser cualquier texto
+        MDC.put(RequestTimingFilter.MDC_USER, user.getUsername());
         List<String> roles = user.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.toList());
-        String access_token = JWT.create()
-                .withSubject(user.getUsername()) //Cualquier cadena
-                .withExpiresAt(new Date(System.currentTimeMillis() + 10 * 60 * 1000)) //Hora actual (milisegundos) + 600000 milisegundos (10minutos * 60 segundos * 1000 milisegundos)
-                .withIssuer(request.getRequestURL().toString())//Nombre de la empresa o autor del token, en nuestro caso la url de la aplicación
-                .withClaim("roles", roles) //Todos los roles para este usuario específico
-                .sign(algorithm); //Firmar el token
-
-        String refresh_token = JWT.create()
-                .withSubject(user.getUsername())
-                .withExpiresAt(new Date(System.currentTimeMillis() + 30 * 60 * 1000)) //Le damos más tiempo que al access_token
-                .withIssuer(request.getRequestURL().toString())
-                .sign(algorithm);
+        String issuer = request.getRequestURL().toString(); //Nombre de la empresa o autor del token, en nuestro caso la url de la aplicación
+        //El tokenProvider firma con el algoritmo compartido (ya no se crea uno por cada login)
+        String access_token = this.tokenProvider.createAccessToken(user.getUsername(), roles, issuer); //Expira en 10 minutos e incluye todos los roles del usuario
+        String refresh_token = this.tokenProvider.createRefreshToken(user.getUsername(), issuer); //Le damos más tiempo que al access_token
 
         //**** Para enviar el access_token y refresh_token dentro de la cabecera de respuesta (Headers)
         //response.setHeader("access_token", access_token);
@@ -79,10 +111,6 @@ public class CustomAuthenticationFilter extends UsernamePasswordAuthenticationFi
 
 
         //**** Para enviar el access_token y refresh_token dentro del cuerpo de la respuesta (Body) en formato JSON
-        Map<String, String> tokens = new HashMap<>();
-        tokens.put("access_token", access_token);
-        tokens.put("refresh_token", refresh_token);
-        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
-        new ObjectMapper().writeValue(response.getOutputStream(), tokens); //Escribimos en el response el objeto tokens, lo devolverá en formato JSON
+        this.tokenResponseWriter.writeTokens(response, access_token, refresh_token); //Escribimos los tokens directamente en el response, en formato JSON
     }
 }
@@ -0,0 +1,137 @@
+package com.magadiflo.app.filter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * Una línea por solicitud, con campos clave=valor (method, path, status, duration_ms) en lugar de los
+ * mensajes sueltos que antes escribían los filtros de seguridad en cada solicitud.
+ * Además deja en el MDC el requestId (el X-Request-Id recibido o uno nuevo, que se devuelve en la respuesta)
+ * y el usuario (lo agregan los filtros de seguridad), así todas las líneas de la solicitud se pueden
+ * relacionar (ver logging.pattern.level).
+ * Las solicitudes normales se registran como INFO y se muestrean (ver logback-spring.xml); las lentas
+ * (slow-request-threshold) y los 5xx como WARN, que nunca se descartan.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE) //Antes que Spring Security: el tiempo incluye la autenticación
+public class RequestTimingFilter extends OncePerRequestFilter {
+
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+    public static final String MDC_REQUEST_ID = "requestId";
+    public static final String MDC_USER = "user";
+
+    private static final String LOG_FORMAT = "method={} path={} status={} duration_ms={}";
+    //Un X-Request-Id con otros caracteres (o muy largo) se reemplaza: terminaría tal cual en el log
+    private static final Pattern VALID_REQUEST_ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    private final long slowRequestNanos;
+
+    public RequestTimingFilter(@Value("${app.logging.slow-request-threshold}") Duration slowRequestThreshold) {
+        this.slowRequestNanos = slowRequestThreshold.toNanos();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        String requestId = request.getHeader(REQUEST_ID_HEADER);
+        if (requestId == null || !VALID_REQUEST_ID.matcher(requestId).matches()) {
+            requestId = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        }
+        response.setHeader(REQUEST_ID_HEADER, requestId);
+        MDC.put(MDC_REQUEST_ID, requestId);
+        boolean failed = true;
+        try {
+            filterChain.doFilter(request, response);
+            failed = false;
+        } finally {
+            if (!failed && request.isAsyncStarted()) {
+                //Respuestas asíncronas (como el streaming de /api/users): se registra cuando terminan
+                request.getAsyncContext().addListener(new CompletionListener(request, response, start,
+                        requestId, MDC.get(MDC_USER)));
+            } else {
+                //Una excepción que llega hasta aquí termina como un 500
+                this.logRequest(request, failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus(), start);
+            }
+            MDC.remove(MDC_REQUEST_ID);
+            MDC.remove(MDC_USER);
+        }
+    }
+
+    private void logRequest(HttpServletRequest request, int status, long start) {
+        long elapsed = System.nanoTime() - start;
+        //Sin el query string: podría traer datos del usuario
+        Object[] fields = {request.getMethod(), request.getRequestURI(), status, elapsed / 1_000 / 1000.0};
+        if (status >= 500 || elapsed >= this.slowRequestNanos) {
+            log.warn(LOG_FORMAT, fields);
+        } else {
+            log.info(LOG_FORMAT, fields);
+        }
+    }
+
+    private class CompletionListener implements AsyncListener {
+
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private final long start;
+        private final String requestId;
+        private final String user;
+
+        CompletionListener(HttpServletRequest request, HttpServletResponse response, long start,
+                           String requestId, String user) {
+            this.request = request;
+            this.response = response;
+            this.start = start;
+            this.requestId = requestId;
+            this.user = user;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            //Se ejecuta en otro hilo: el MDC se vuelve a armar solo para esta línea
+            MDC.put(MDC_REQUEST_ID, this.requestId);
+            if (this.user != null) {
+                MDC.put(MDC_USER, this.user);
+            }
+            try {
+                logRequest(this.request, this.response.getStatus(), this.start);
+            } finally {
+                MDC.remove(MDC_REQUEST_ID);
+                MDC.remove(MDC_USER);
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            //Luego llega onComplete con el estado final
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            //Luego llega onComplete con el estado final
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.magadiflo.app.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deja pasar uno de cada oneIn eventos INFO (o menores) de un logger y sus hijos; WARN y ERROR siempre pasan.
+ * Es un TurboFilter: se evalúa antes de armar el evento, así los descartados no cuestan ni el formateo
+ * del mensaje. Se configura en logback-spring.xml, una instancia por categoría:
+ * <pre>
+ * &lt;turboFilter class="com.magadiflo.app.logging.SamplingTurboFilter"&gt;
+ *     &lt;loggerName&gt;com.magadiflo.app.filter.RequestTimingFilter&lt;/loggerName&gt;
+ *     &lt;oneIn&gt;10&lt;/oneIn&gt;
+ * &lt;/turboFilter&gt;
+ * </pre>
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    private final AtomicLong counter = new AtomicLong();
+
+    private String loggerName;
+    private int oneIn = 1;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (!this.isStarted() || level == null || level.isGreaterOrEqual(Level.WARN) || this.oneIn <= 1
+                || !this.matches(logger.getName())) {
+            return FilterReply.NEUTRAL;
+        }
+        //Lo que el logger descarta por su nivel no cuenta para el muestreo
+        if (!level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        //NEUTRAL y no ACCEPT: el evento elegido igual debe cumplir con el nivel configurado del logger
+        return this.counter.getAndIncrement() % this.oneIn == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    private boolean matches(String name) {
+        return name.startsWith(this.loggerName)
+                && (name.length() == this.loggerName.length() || name.charAt(this.loggerName.length()) == '.');
+    }
+
+    @Override
+    public void start() {
+        if (this.loggerName == null || this.loggerName.isEmpty()) {
+            this.addError("No loggerName set for the SamplingTurboFilter named " + this.getName());
+            return;
+        }
+        super.start();
+    }
+
+    public void setLoggerName(String loggerName) {
+        this.loggerName = loggerName;
+    }
+
+    public void setOneIn(int oneIn) {
+        this.oneIn = oneIn;
+    }
+
+}
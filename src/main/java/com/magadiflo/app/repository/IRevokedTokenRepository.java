@@ -0,0 +1,32 @@
+package com.magadiflo.app.repository;
+
+import com.magadiflo.app.domain.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface IRevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+
+    //Insert directo (save() haría un merge y sobrescribiría la fila): si el jti ya existe lanza
+    //DataIntegrityViolationException, así sabemos que el token ya estaba revocado o usado
+    @Transactional
+    @Modifying
+    @Query(value = "insert into revoked_tokens (jti, expires_at, revoked_at) values (:jti, :expiresAt, :revokedAt)",
+            nativeQuery = true)
+    int insert(@Param("jti") String jti, @Param("expiresAt") Instant expiresAt, @Param("revokedAt") Instant revokedAt);
+
+    //Para cargar al arrancar (todos los vigentes) y para sincronizar lo que revocaron otras instancias
+    @Query("select t from RevokedToken t where t.revokedAt > :since and t.expiresAt > :now")
+    List<RevokedToken> findRevokedSince(@Param("since") Instant since, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("delete from RevokedToken t where t.expiresAt <= :now")
+    int deleteExpired(@Param("now") Instant now);
+
+}
@@ -2,9 +2,32 @@ package com.magadiflo.app.repository;
 
 import com.magadiflo.app.domain.Role;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
 
 public interface IRolRepository extends JpaRepository<Role, Long> {
 
+    //Caché de consultas: el resultado (el id) se guarda hasta que cambie la tabla roles,
+    //y la entidad sale de la caché de segundo nivel
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
     Role findByName(String name);
 
+    List<Role> findByNameIn(Collection<String> names);
+
+    //Roles que ya tienen posición en la máscara de bits, para RoleRegistry.
+    //Desde la primaria: se recarga justo después de crear un rol, cuando la réplica podría no tenerlo aún
+    @Transactional
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    List<Role> findByBitIndexNotNull();
+
+    @Query("select max(r.bitIndex) from Role r")
+    Integer findMaxBitIndex();
+
 }
@@ -0,0 +1,16 @@
+package com.magadiflo.app.repository;
+
+import com.magadiflo.app.domain.SigningKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface ISigningKeyRepository extends JpaRepository<SigningKey, String> {
+
+    //La más reciente primero. Transacción de lectura-escritura para leer de la primaria:
+    //justo después de rotar, la réplica podría no tener aún la clave nueva y se generaría otra
+    @Transactional
+    List<SigningKey> findAllByOrderByCreatedAtDesc();
+
+}
@@ -0,0 +1,14 @@
+package com.magadiflo.app.repository;
+
+import com.magadiflo.app.domain.User;
+
+/**
+ * Fragmento de IUserRepository para buscar por el natural id (username).
+ * A diferencia de findByUsername, que siempre ejecuta una consulta, esta búsqueda usa la caché
+ * de natural id y la de entidades de Hibernate: si el usuario ya está en caché no se toca la BD.
+ */
+public interface IUserNaturalIdRepository {
+
+    User findBySimpleNaturalId(String username);
+
+}
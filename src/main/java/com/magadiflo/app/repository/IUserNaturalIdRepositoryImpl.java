@@ -0,0 +1,20 @@
+package com.magadiflo.app.repository;
+
+import com.magadiflo.app.domain.User;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+
+//Spring Data la encuentra por el nombre (interfaz del fragmento + Impl) y la combina con IUserRepository
+@RequiredArgsConstructor
+public class IUserNaturalIdRepositoryImpl implements IUserNaturalIdRepository {
+
+    private final EntityManager entityManager;
+
+    @Override
+    public User findBySimpleNaturalId(String username) {
+        return this.entityManager.unwrap(Session.class).bySimpleNaturalId(User.class).load(username);
+    }
+
+}
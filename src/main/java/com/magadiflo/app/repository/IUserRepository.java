@@ -1,10 +1,65 @@
 package com.magadiflo.app.repository;
 
 import com.magadiflo.app.domain.User;
+import com.magadiflo.app.dto.UserCredentialsRow;
+import com.magadiflo.app.dto.UserIdRow;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-public interface IUserRepository extends JpaRepository<User, Long> {
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_PASS_DISTINCT_THROUGH;
+
+public interface IUserRepository extends JpaRepository<User, Long>, IUserNaturalIdRepository, IUserSearchRepository {
+
+    //Trae al usuario junto con sus roles en una sola consulta (left join fetch)
+    @EntityGraph(attributePaths = "roles")
     User findByUsername(String username);
 
+    //Solo las columnas que necesita la autenticación: una fila por rol, en una sola consulta
+    @Query("select u.username as username, u.password as password, r.name as roleName " +
+            "from User u left join u.roles r where u.username = :username")
+    List<UserCredentialsRow> findCredentialsByUsername(@Param("username") String username);
+
+    //Solo actualiza el hash de la contraseña, sin cargar la entidad
+    @Modifying
+    @Query("update User u set u.password = :password where u.username = :username")
+    int updatePassword(@Param("username") String username, @Param("password") String password);
+
+    //Para la importación masiva: cuáles de estos usernames ya existen, en una sola consulta
+    @Query("select u.username from User u where u.username in :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    //Para la asignación masiva de roles: resuelve muchos usernames a sus ids en una sola consulta
+    @Query("select u.id as id, u.username as username from User u where u.username in :usernames")
+    List<UserIdRow> findIdsByUsernameIn(@Param("usernames") Collection<String> usernames);
+
+    //Paginación por cursor (keyset): en lugar de un OFFSET, buscamos a partir del último id ya enviado,
+    //así cada página cuesta lo mismo sin importar qué tan lejos esté en la tabla.
+    //Primero se obtienen solo los ids de la página, ya que un LIMIT junto a un join fetch
+    //de una colección obligaría a Hibernate a paginar en memoria
+    @Query("select u.id from User u where u.id > :afterId order by u.id")
+    List<Long> findPageIds(@Param("afterId") long afterId, Pageable pageable);
+
+    //Luego se cargan esos usuarios con sus roles en una sola consulta
+    @QueryHints(@QueryHint(name = HINT_PASS_DISTINCT_THROUGH, value = "false"))
+    @Query("select distinct u from User u left join fetch u.roles where u.id in :ids order by u.id")
+    List<User> findAllWithRolesByIdIn(@Param("ids") Collection<Long> ids);
+
+    //El fetch size hace que el driver lea las filas por bloques (en MySQL requiere useCursorFetch=true)
+    //en lugar de cargar todo el resultado en memoria. El Stream debe consumirse dentro de una transacción y cerrarse.
+    //Hibernate agrupa las filas consecutivas del join fetch, por eso es importante ordenar por id
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select u from User u left join fetch u.roles order by u.id")
+    Stream<User> streamAll();
+
 }
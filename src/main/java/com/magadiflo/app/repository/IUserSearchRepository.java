@@ -0,0 +1,44 @@
+package com.magadiflo.app.repository;
+
+import com.magadiflo.app.domain.Role;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Fragmento de IUserRepository para la búsqueda de usuarios por prefijo (GET /api/users/search).
+ * La consulta se arma según los filtros presentes, así cada combinación usa su propio plan
+ * en lugar de un "(:param is null or ...)" que impide usar los índices.
+ */
+public interface IUserSearchRepository {
+
+    /**
+     * Ids de los usuarios cuyo username o name (según field) empieza con prefix, ordenados por ese campo
+     * y luego por id. after es el último usuario de la página anterior (null en la primera página).
+     */
+    List<Long> searchIds(SearchField field, String prefix, Role role, SearchCursor after, int limit);
+
+    @Getter
+    @RequiredArgsConstructor
+    enum SearchField {
+
+        //Índice único uk_users_username
+        USERNAME("username"),
+        //Índice idx_users_name (en InnoDB cada entrada del índice incluye el id, así que también ordena por id)
+        NAME("name");
+
+        private final String attribute;
+    }
+
+    /**
+     * Posición del último usuario entregado: el valor del campo de búsqueda y su id (los nombres se repiten).
+     */
+    @Getter
+    @RequiredArgsConstructor
+    class SearchCursor {
+        private final String value;
+        private final long id;
+    }
+
+}
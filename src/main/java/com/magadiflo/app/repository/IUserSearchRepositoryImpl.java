@@ -0,0 +1,50 @@
+package com.magadiflo.app.repository;
+
+import com.magadiflo.app.domain.Role;
+import lombok.RequiredArgsConstructor;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.List;
+
+//Spring Data la encuentra por el nombre (interfaz del fragmento + Impl) y la combina con IUserRepository
+@RequiredArgsConstructor
+public class IUserSearchRepositoryImpl implements IUserSearchRepository {
+
+    private final EntityManager entityManager;
+
+    /**
+     * Sin lower(): username y name usan una collation que no distingue mayúsculas (V3__user_search_indexes.sql),
+     * así "like 'mag%'" ya encuentra a "Magadiflo" y se resuelve como un rango del índice.
+     * Con el cursor, el rango empieza justo después del último usuario entregado y la BD
+     * lee solo limit entradas del índice, sin importar qué tan lejos esté la página.
+     */
+    @Override
+    public List<Long> searchIds(SearchField field, String prefix, Role role, SearchCursor after, int limit) {
+        String attribute = "u." + field.getAttribute();
+        StringBuilder jpql = new StringBuilder("select u.id from User u where ")
+                .append(attribute).append(" like :prefix").append(LikePatterns.ESCAPE_CLAUSE);
+        if (role != null) {
+            //Una subconsulta sobre users_roles por (user_id, roles_id), ver idx_users_roles_user_role
+            jpql.append(" and :role member of u.roles");
+        }
+        if (after != null) {
+            jpql.append(" and (").append(attribute).append(" > :afterValue or (")
+                    .append(attribute).append(" = :afterValue and u.id > :afterId))");
+        }
+        jpql.append(" order by ").append(attribute).append(", u.id");
+
+        TypedQuery<Long> query = this.entityManager.createQuery(jpql.toString(), Long.class)
+                .setParameter("prefix", LikePatterns.startsWith(prefix))
+                .setMaxResults(limit);
+        if (role != null) {
+            query.setParameter("role", role);
+        }
+        if (after != null) {
+            query.setParameter("afterValue", after.getValue());
+            query.setParameter("afterId", after.getId());
+        }
+        return query.getResultList();
+    }
+
+}
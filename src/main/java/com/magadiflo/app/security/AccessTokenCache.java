@@ -0,0 +1,159 @@
+package com.magadiflo.app.security;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.magadiflo.app.dto.TokenIntrospectionResult;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caché de tokens de acceso ya verificados.
+ * Un cliente envía el mismo access_token cientos de veces durante sus 10 minutos de vida,
+ * así que guardamos la autenticación ya construida (UsernamePasswordAuthenticationToken)
+ * indexada por el digest SHA-256 del token. Cada entrada se elimina en el instante
+ * en que vence el claim exp del token, por lo que nunca se sirve un token expirado.
+ * Los tokens inválidos, y los que no son access_token (un refresh_token), no se guardan:
+ * la excepción de verificación se propaga al filtro.
+ * La revocación (logout) se consulta en cada llamada, también cuando el token ya está en caché.
+ */
+@Component
+public class AccessTokenCache {
+
+    //Tope para tokens sin claim exp (nuestros tokens siempre lo tienen)
+    private static final long MAX_TTL_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final JwtTokenProvider tokenProvider;
+    private final RevocationStore revocationStore;
+    private final Cache<String, VerifiedToken> cache;
+
+    private final SecurityMetrics securityMetrics;
+
+    public AccessTokenCache(JwtTokenProvider tokenProvider, RevocationStore revocationStore,
+                            SecurityMetrics securityMetrics,
+                            @Value("${app.security.token-cache.max-size}") long maxSize) {
+        this.tokenProvider = tokenProvider;
+        this.revocationStore = revocationStore;
+        this.securityMetrics = securityMetrics;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TokenExpiry())
+                .recordStats()
+                .build();
+        //cache.gets{result=hit|miss}, cache.size, cache.evictions... con el tag cache=access_tokens
+        CaffeineCacheMetrics.monitor(securityMetrics.getMeterRegistry(), this.cache, "access_tokens");
+    }
+
+    /**
+     * Devuelve la autenticación asociada al token, verificándolo solo si no está en caché.
+     * Lanza JWTVerificationException si el token no es válido o fue revocado.
+     */
+    public UsernamePasswordAuthenticationToken getAuthentication(String token) {
+        VerifiedToken verifiedToken = this.cache.get(digest(token), key -> this.verify(token));
+        if (this.revocationStore.isRevoked(verifiedToken.getJti())) {
+            throw new TokenRevokedException("The token has been revoked");
+        }
+        return verifiedToken.getAuthentication();
+    }
+
+    /**
+     * Lo mismo que getAuthentication pero para el endpoint de introspección: en lugar de lanzar
+     * la excepción, la devuelve como resultado inactivo. Usa la misma caché, así un token que el
+     * gateway ya consultó (o que ya pasó por CustomAuthorizationFilter) no se vuelve a verificar.
+     */
+    public TokenIntrospectionResult introspect(String token) {
+        VerifiedToken verifiedToken;
+        try {
+            verifiedToken = this.cache.get(digest(token), key -> this.verify(token));
+        } catch (JWTVerificationException e) {
+            return TokenIntrospectionResult.inactive(e.getMessage());
+        }
+        if (this.revocationStore.isRevoked(verifiedToken.getJti())) {
+            return TokenIntrospectionResult.inactive("The token has been revoked");
+        }
+        UsernamePasswordAuthenticationToken authentication = verifiedToken.getAuthentication();
+        List<String> roles = new ArrayList<>(authentication.getAuthorities().size());
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            roles.add(authority.getAuthority());
+        }
+        return TokenIntrospectionResult.active(authentication.getName(), roles,
+                TimeUnit.MILLISECONDS.toSeconds(verifiedToken.getExpiresAtMillis()));
+    }
+
+    public CacheStats stats() {
+        return this.cache.stats();
+    }
+
+    public long size() {
+        return this.cache.estimatedSize();
+    }
+
+    private VerifiedToken verify(String token) {
+        return this.securityMetrics.getTokenVerificationTimer().record(() -> this.verifyAndDecode(token));
+    }
+
+    private VerifiedToken verifyAndDecode(String token) {
+        DecodedJWT decodedJWT = this.tokenProvider.verifyAccessToken(token);
+        Date expiresAt = decodedJWT.getExpiresAt();
+        return new VerifiedToken(this.tokenProvider.getAuthentication(decodedJWT), decodedJWT.getId(),
+                expiresAt == null ? Long.MAX_VALUE : expiresAt.getTime());
+    }
+
+    private static String digest(String token) {
+        byte[] hash = SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getEncoder().withoutPadding().encodeToString(hash);
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    static class VerifiedToken {
+        private final UsernamePasswordAuthenticationToken authentication;
+        private final String jti;
+        private final long expiresAtMillis;
+    }
+
+    private static class TokenExpiry implements Expiry<String, VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+            long remainingMillis = value.getExpiresAtMillis() - System.currentTimeMillis();
+            return Math.max(0, Math.min(MAX_TTL_NANOS, TimeUnit.MILLISECONDS.toNanos(remainingMillis)));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+}
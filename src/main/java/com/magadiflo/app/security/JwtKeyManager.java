@@ -0,0 +1,262 @@
+package com.magadiflo.app.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.magadiflo.app.domain.SigningKey;
+import com.magadiflo.app.repository.ISigningKeyRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Administra las claves RSA con las que se firman (RS256) y verifican los tokens.
+ * - Cada token lleva en su cabecera el kid de la clave que lo firmó.
+ * - Cada rotation-interval se genera una clave nueva. Se publica en el JWKS durante jwks-max-age
+ *   antes de empezar a firmar con ella, así los gateways que tienen el JWKS en caché ya la conocen.
+ * - La clave anterior se sigue aceptando durante overlap después de dejar de firmar con ella,
+ *   para que los tokens ya emitidos (el refresh_token dura 30 minutos) sigan siendo válidos.
+ * Las claves viven en la BD (compartidas por todas las instancias) y aquí se mantiene una copia
+ * inmutable en memoria: la clave de firma, un JWTVerifier por kid y el JWKS ya armado.
+ * Si llega un token con un kid desconocido (otra instancia acaba de rotar) se recargan de la BD,
+ * como máximo una vez cada MIN_RELOAD_INTERVAL.
+ */
+@Slf4j
+@Component
+public class JwtKeyManager {
+
+    public static final String ALGORITHM = "RS256";
+
+    private static final Duration MIN_RELOAD_INTERVAL = Duration.ofSeconds(5);
+
+    private final ISigningKeyRepository signingKeyRepository;
+    private final Duration rotationInterval;
+    private final Duration overlap;
+    private final Duration jwksMaxAge;
+    private final int keySize;
+
+    private volatile KeySet keySet = KeySet.EMPTY;
+    private volatile Instant lastReload = Instant.EPOCH;
+
+    public JwtKeyManager(ISigningKeyRepository signingKeyRepository,
+                         @Value("${app.security.jwt.rotation-interval}") Duration rotationInterval,
+                         @Value("${app.security.jwt.overlap}") Duration overlap,
+                         @Value("${app.security.jwt.jwks-max-age}") Duration jwksMaxAge,
+                         @Value("${app.security.jwt.key-size}") int keySize) {
+        this.signingKeyRepository = signingKeyRepository;
+        this.rotationInterval = rotationInterval;
+        this.overlap = overlap;
+        this.jwksMaxAge = jwksMaxAge;
+        this.keySize = keySize;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.refreshKeys();
+    }
+
+    /**
+     * Recarga las claves, genera una nueva si la más reciente ya cumplió su rotation-interval
+     * y elimina las que ya no se aceptan.
+     * Si dos instancias rotan a la vez se crean dos claves: no es un problema, se firma con la más
+     * reciente y la otra se retira como cualquier clave antigua.
+     */
+    @Scheduled(fixedDelayString = "${app.security.jwt.key-check-interval}",
+            initialDelayString = "${app.security.jwt.key-check-interval}")
+    public synchronized void refreshKeys() {
+        Instant now = Instant.now();
+        List<SigningKey> keys = this.signingKeyRepository.findAllByOrderByCreatedAtDesc();
+        if (keys.isEmpty() || !keys.get(0).getCreatedAt().plus(this.rotationInterval).isAfter(now)) {
+            SigningKey signingKey = newSigningKey(this.keySize);
+            this.signingKeyRepository.save(signingKey);
+            log.info("New signing key {} generated", signingKey.getKid());
+            keys = this.signingKeyRepository.findAllByOrderByCreatedAtDesc();
+        }
+
+        List<String> retired = new ArrayList<>();
+        for (int i = 1; i < keys.size(); i++) {
+            if (!this.retiresAt(keys.get(i - 1)).isAfter(now)) {
+                retired.add(keys.get(i).getKid());
+            }
+        }
+        if (!retired.isEmpty()) {
+            this.signingKeyRepository.deleteAllByIdInBatch(retired);
+            log.info("Signing keys {} retired", retired);
+        }
+        this.load(keys, now);
+    }
+
+    /**
+     * Clave con la que se firman los tokens nuevos.
+     */
+    public ActiveKey getSigningKey() {
+        ActiveKey signingKey = this.keySet.getSigningKey();
+        if (signingKey == null) {
+            throw new IllegalStateException("No signing key available");
+        }
+        return signingKey;
+    }
+
+    /**
+     * Verificador de la clave con ese kid, o null si no existe (o ya fue retirada).
+     */
+    public JWTVerifier getVerifier(String kid) {
+        if (kid == null) {
+            return null;
+        }
+        JWTVerifier verifier = this.keySet.getVerifiers().get(kid);
+        if (verifier == null && this.reloadIfStale()) {
+            verifier = this.keySet.getVerifiers().get(kid);
+        }
+        return verifier;
+    }
+
+    /**
+     * Claves públicas vigentes en formato JWKS (RFC 7517), listo para serializar.
+     */
+    public Map<String, Object> getJwks() {
+        return this.keySet.getJwks();
+    }
+
+    public Duration getJwksMaxAge() {
+        return this.jwksMaxAge;
+    }
+
+    private synchronized boolean reloadIfStale() {
+        Instant now = Instant.now();
+        if (this.lastReload.plus(MIN_RELOAD_INTERVAL).isAfter(now)) {
+            return false;
+        }
+        this.load(this.signingKeyRepository.findAllByOrderByCreatedAtDesc(), now);
+        return true;
+    }
+
+    //keys viene ordenado de la más reciente a la más antigua
+    private void load(List<SigningKey> keys, Instant now) {
+        ActiveKey signingKey = null;
+        Map<String, JWTVerifier> verifiers = new HashMap<>();
+        List<Map<String, Object>> jwks = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            SigningKey key = keys.get(i);
+            if (i > 0 && !this.retiresAt(keys.get(i - 1)).isAfter(now)) {
+                break;
+            }
+            RSAPublicKey publicKey = decodePublicKey(key.getPublicKey());
+            verifiers.put(key.getKid(), JWT.require(Algorithm.RSA256(publicKey, null)).build());
+            jwks.add(toJwk(key.getKid(), publicKey));
+            //Se firma con la clave más reciente que ya lleva jwks-max-age publicada
+            //(o con la única que haya, cuando la aplicación arranca por primera vez)
+            boolean published = !key.getCreatedAt().plus(this.jwksMaxAge).isAfter(now);
+            if (signingKey == null && (published || i == keys.size() - 1)) {
+                signingKey = new ActiveKey(key.getKid(),
+                        Algorithm.RSA256(publicKey, decodePrivateKey(key.getPrivateKey())));
+            }
+        }
+        Map<String, Object> jwksDocument = new LinkedHashMap<>();
+        jwksDocument.put("keys", Collections.unmodifiableList(jwks));
+        this.keySet = new KeySet(signingKey, Collections.unmodifiableMap(verifiers),
+                Collections.unmodifiableMap(jwksDocument));
+        this.lastReload = now;
+    }
+
+    //Una clave deja de aceptarse overlap después de que su sucesora empieza a firmar
+    private Instant retiresAt(SigningKey successor) {
+        return successor.getCreatedAt().plus(this.jwksMaxAge).plus(this.overlap);
+    }
+
+    public static SigningKey newSigningKey(int keySize) {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(keySize);
+            KeyPair keyPair = generator.generateKeyPair();
+            Base64.Encoder encoder = Base64.getEncoder();
+            return new SigningKey(UUID.randomUUID().toString(),
+                    encoder.encodeToString(keyPair.getPublic().getEncoded()),
+                    encoder.encodeToString(keyPair.getPrivate().getEncoded()),
+                    Instant.now());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to generate a signing key", e);
+        }
+    }
+
+    private static RSAPublicKey decodePublicKey(String encoded) {
+        try {
+            return (RSAPublicKey) KeyFactory.getInstance("RSA")
+                    .generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(encoded)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Invalid public key", e);
+        }
+    }
+
+    private static RSAPrivateKey decodePrivateKey(String encoded) {
+        try {
+            return (RSAPrivateKey) KeyFactory.getInstance("RSA")
+                    .generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(encoded)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Invalid private key", e);
+        }
+    }
+
+    private static Map<String, Object> toJwk(String kid, RSAPublicKey publicKey) {
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        jwk.put("kty", "RSA");
+        jwk.put("use", "sig");
+        jwk.put("alg", ALGORITHM);
+        jwk.put("kid", kid);
+        jwk.put("n", base64Url(publicKey.getModulus()));
+        jwk.put("e", base64Url(publicKey.getPublicExponent()));
+        return Collections.unmodifiableMap(jwk);
+    }
+
+    //Entero sin signo en big-endian (sin el byte 0 que agrega BigInteger), en Base64 URL sin relleno
+    private static String base64Url(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class ActiveKey {
+        private final String kid;
+        private final Algorithm algorithm;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class KeySet {
+        static final KeySet EMPTY = new KeySet(null, Collections.emptyMap(), Collections.emptyMap());
+
+        private final ActiveKey signingKey;
+        private final Map<String, JWTVerifier> verifiers;
+        private final Map<String, Object> jwks;
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.magadiflo.app.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.JWTCreator;
+import com.auth0.jwt.exceptions.InvalidClaimException;
+import com.auth0.jwt.interfaces.Claim;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Centraliza la creación y verificación de los tokens.
+ * Se firman con RS256 usando la clave activa de JwtKeyManager (su kid va en la cabecera del token)
+ * y se verifican con el JWTVerifier de ese kid. Los Algorithm y JWTVerifier son inmutables y
+ * thread-safe, JwtKeyManager los construye una sola vez por clave y se comparten entre los filtros
+ * y el endpoint de refresh token.
+ * Cada token lleva en el claim typ si es access o refresh, así uno no se puede usar en lugar del otro.
+ */
+@Component
+public class JwtTokenProvider {
+
+    //Formato anterior: arreglo con los nombres de los roles
+    public static final String ROLES_CLAIM = "roles";
+    //Máscara de bits de los roles (ver RoleRegistry): un número, o Base64 si hay roles con bit_index >= 63
+    public static final String ROLE_MASK_CLAIM = "rm";
+    public static final String TOKEN_TYPE_CLAIM = "typ";
+    public static final String ACCESS_TOKEN_TYPE = "access";
+    public static final String REFRESH_TOKEN_TYPE = "refresh";
+
+    private static final long ACCESS_TOKEN_VALIDITY = 10 * 60 * 1000; //10 minutos
+    private static final long REFRESH_TOKEN_VALIDITY = 30 * 60 * 1000; //30 minutos
+
+    private final JwtKeyManager keyManager;
+    private final RoleRegistry roleRegistry;
+    private final boolean acceptRolesClaim;
+    private final SecurityMetrics securityMetrics;
+
+    public JwtTokenProvider(JwtKeyManager keyManager, RoleRegistry roleRegistry,
+                            @Value("${app.security.jwt.accept-roles-claim}") boolean acceptRolesClaim,
+                            SecurityMetrics securityMetrics) {
+        this.keyManager = keyManager;
+        this.roleRegistry = roleRegistry;
+        this.acceptRolesClaim = acceptRolesClaim;
+        this.securityMetrics = securityMetrics;
+    }
+
+    public String createAccessToken(String username, List<String> roles, String issuer) {
+        return this.securityMetrics.getAccessTokenSigningTimer().record(() -> this.signAccessToken(username, roles, issuer));
+    }
+
+    public String createRefreshToken(String username, String issuer) {
+        return this.securityMetrics.getRefreshTokenSigningTimer().record(() -> this.signRefreshToken(username, issuer));
+    }
+
+    private String signAccessToken(String username, List<String> roles, String issuer) {
+        JwtKeyManager.ActiveKey signingKey = this.keyManager.getSigningKey();
+        JWTCreator.Builder builder = JWT.create()
+                .withKeyId(signingKey.getKid())
+                .withJWTId(UUID.randomUUID().toString())
+                .withSubject(username)
+                .withExpiresAt(new Date(System.currentTimeMillis() + ACCESS_TOKEN_VALIDITY))
+                .withIssuer(issuer)
+                .withClaim(TOKEN_TYPE_CLAIM, ACCESS_TOKEN_TYPE);
+        BitSet roleMask = this.roleRegistry.toMask(roles);
+        if (roleMask.length() <= 63) {
+            builder.withClaim(ROLE_MASK_CLAIM, roleMask.isEmpty() ? 0L : roleMask.toLongArray()[0]);
+        } else {
+            builder.withClaim(ROLE_MASK_CLAIM, RoleRegistry.encode(roleMask));
+        }
+        return builder.sign(signingKey.getAlgorithm());
+    }
+
+    private String signRefreshToken(String username, String issuer) {
+        JwtKeyManager.ActiveKey signingKey = this.keyManager.getSigningKey();
+        return JWT.create()
+                .withKeyId(signingKey.getKid())
+                .withJWTId(UUID.randomUUID().toString())
+                .withSubject(username)
+                .withExpiresAt(new Date(System.currentTimeMillis() + REFRESH_TOKEN_VALIDITY))
+                .withIssuer(issuer)
+                .withClaim(TOKEN_TYPE_CLAIM, REFRESH_TOKEN_TYPE)
+                .sign(signingKey.getAlgorithm());
+    }
+
+    /**
+     * Verifica la firma (con la clave indicada por el kid) y la expiración del token.
+     * Lanza JWTVerificationException si el token no es válido.
+     */
+    public DecodedJWT verify(String token) {
+        DecodedJWT decodedJWT = JWT.decode(token);
+        JWTVerifier verifier = this.keyManager.getVerifier(decodedJWT.getKeyId());
+        if (verifier == null) {
+            throw new UnknownSigningKeyException("The token was signed with an unknown key");
+        }
+        return verifier.verify(decodedJWT);
+    }
+
+    //Como verify, pero además lanza WrongTokenTypeException si no es un access_token
+    public DecodedJWT verifyAccessToken(String token) {
+        return requireType(this.verify(token), ACCESS_TOKEN_TYPE);
+    }
+
+    //Como verify, pero además lanza WrongTokenTypeException si no es un refresh_token
+    public DecodedJWT verifyRefreshToken(String token) {
+        return requireType(this.verify(token), REFRESH_TOKEN_TYPE);
+    }
+
+    private static DecodedJWT requireType(DecodedJWT decodedJWT, String expectedType) {
+        if (!expectedType.equals(tokenType(decodedJWT))) {
+            throw new WrongTokenTypeException("Expected a token of type " + expectedType);
+        }
+        return decodedJWT;
+    }
+
+    //Los tokens emitidos antes del claim typ (vencen a más tardar 30 minutos después del despliegue)
+    //se distinguen por los roles: solo los access_token los llevan
+    private static String tokenType(DecodedJWT decodedJWT) {
+        String type = decodedJWT.getClaim(TOKEN_TYPE_CLAIM).asString();
+        if (type != null) {
+            return type;
+        }
+        return decodedJWT.getClaim(ROLE_MASK_CLAIM).isNull() && decodedJWT.getClaim(ROLES_CLAIM).isNull()
+                ? REFRESH_TOKEN_TYPE
+                : ACCESS_TOKEN_TYPE;
+    }
+
+    /**
+     * Construye la autenticación que usará Spring Security a partir de un token ya verificado.
+     * No necesitamos la contraseña del usuario (tampoco la tenemos).
+     * Las authorities son las listas compartidas de RoleRegistry, no se crean por token.
+     */
+    public UsernamePasswordAuthenticationToken getAuthentication(DecodedJWT decodedJWT) {
+        return new UsernamePasswordAuthenticationToken(decodedJWT.getSubject(), null, this.getAuthorities(decodedJWT));
+    }
+
+    private List<GrantedAuthority> getAuthorities(DecodedJWT decodedJWT) {
+        Claim roleMask = decodedJWT.getClaim(ROLE_MASK_CLAIM);
+        if (!roleMask.isNull()) {
+            Long mask = roleMask.asLong();
+            return mask != null ? this.roleRegistry.getAuthorities(mask) : this.roleRegistry.getAuthorities(roleMask.asString());
+        }
+        //Tokens emitidos antes de la máscara de bits, mientras dure la transición.
+        //Sin ninguno de los dos claims no es un access_token: se rechaza, no se autentica sin roles
+        String[] roles = this.acceptRolesClaim ? decodedJWT.getClaim(ROLES_CLAIM).asArray(String.class) : null;
+        if (roles == null) {
+            throw new InvalidClaimException("The token has no roles");
+        }
+        List<GrantedAuthority> authorities = new ArrayList<>(roles.length);
+        for (String role : roles) {
+            authorities.add(new SimpleGrantedAuthority(role));
+        }
+        return Collections.unmodifiableList(authorities);
+    }
+
+}
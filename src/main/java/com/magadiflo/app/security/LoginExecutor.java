@@ -0,0 +1,95 @@
+package com.magadiflo.app.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Pool acotado donde se ejecuta la verificación de la contraseña (BCrypt) del login.
+ * Tiene tantos hilos como núcleos y una cola limitada: si llega una ráfaga de logins,
+ * los que no caben en la cola se rechazan de inmediato (503) en lugar de ocupar
+ * todos los hilos de Tomcat y dejar sin CPU al resto de la API.
+ * Las métricas del pool (executor.queued, executor.active, executor, executor.idle)
+ * se publican con el tag name=login.bcrypt
+ */
+@Component
+public class LoginExecutor {
+
+    private final ThreadPoolExecutor threadPool;
+    private final ExecutorService executor;
+    private final long timeoutMillis;
+    private final Counter queueFullRejections;
+    private final Counter timeoutRejections;
+
+    public LoginExecutor(@Value("${app.security.login.queue-capacity}") int queueCapacity,
+                         @Value("${app.security.login.timeout}") Duration timeout,
+                         MeterRegistry meterRegistry) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("login-bcrypt-");
+        threadFactory.setDaemon(true);
+        this.threadPool = new ThreadPoolExecutor(cores, cores, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry, this.threadPool, "login.bcrypt", Collections.emptyList());
+        this.timeoutMillis = timeout.toMillis();
+        this.queueFullRejections = meterRegistry.counter("security.login.rejected", "reason", "queue_full");
+        this.timeoutRejections = meterRegistry.counter("security.login.rejected", "reason", "timeout");
+    }
+
+    /**
+     * Ejecuta la autenticación en el pool y espera su resultado.
+     * Las AuthenticationException (por ejemplo BadCredentialsException) se relanzan tal cual.
+     */
+    public Authentication authenticate(Callable<Authentication> authentication) {
+        Future<Authentication> future;
+        try {
+            future = this.executor.submit(authentication);
+        } catch (RejectedExecutionException e) {
+            this.queueFullRejections.increment();
+            throw new LoginRejectedException("Login service is busy, try again later", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        try {
+            return future.get(this.timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            this.timeoutRejections.increment();
+            throw new LoginRejectedException("Login service is busy, try again later", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LoginRejectedException("Login interrupted", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof AuthenticationException) {
+                throw (AuthenticationException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.threadPool.shutdown();
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.magadiflo.app.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.magadiflo.app.domain.Usernames;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token buckets por username y por IP para el login.
+ * Rechazar aquí cuesta casi nada, en cambio cada intento que pasa cuesta un hash BCrypt.
+ * Los buckets que no se usan se eliminan solos (expireAfterAccess), así un ataque
+ * con miles de usernames distintos no hace crecer la memoria sin límite.
+ */
+@Component
+public class LoginRateLimiter {
+
+    private static final long MAX_BUCKETS = 100_000;
+
+    private final Cache<String, TokenBucket> usernameBuckets;
+    private final Cache<String, TokenBucket> ipBuckets;
+    private final int usernameCapacity;
+    private final int usernameRefillPerMinute;
+    private final int ipCapacity;
+    private final int ipRefillPerMinute;
+    private final Counter usernameRejections;
+    private final Counter ipRejections;
+
+    public LoginRateLimiter(@Value("${app.security.login.rate-limit.username.capacity}") int usernameCapacity,
+                            @Value("${app.security.login.rate-limit.username.refill-per-minute}") int usernameRefillPerMinute,
+                            @Value("${app.security.login.rate-limit.ip.capacity}") int ipCapacity,
+                            @Value("${app.security.login.rate-limit.ip.refill-per-minute}") int ipRefillPerMinute,
+                            MeterRegistry meterRegistry) {
+        this.usernameCapacity = usernameCapacity;
+        this.usernameRefillPerMinute = usernameRefillPerMinute;
+        this.ipCapacity = ipCapacity;
+        this.ipRefillPerMinute = ipRefillPerMinute;
+        this.usernameBuckets = Caffeine.newBuilder().maximumSize(MAX_BUCKETS).expireAfterAccess(Duration.ofMinutes(10)).build();
+        this.ipBuckets = Caffeine.newBuilder().maximumSize(MAX_BUCKETS).expireAfterAccess(Duration.ofMinutes(10)).build();
+        this.usernameRejections = meterRegistry.counter("security.login.rejected", "reason", "username_rate_limit");
+        this.ipRejections = meterRegistry.counter("security.login.rejected", "reason", "ip_rate_limit");
+    }
+
+    /**
+     * Lanza LoginRejectedException (429) si la IP o el username ya agotaron sus intentos.
+     * ip es request.getRemoteAddr(): detrás del balanceador Tomcat ya la tomó de X-Forwarded-For
+     * (server.forward-headers-strategy). El username se normaliza como lo compara la BD (ver Usernames):
+     * "Admin" y "ADMIN" son el mismo usuario, así que gastan del mismo bucket.
+     */
+    public void checkAttempt(String username, String ip) {
+        if (!this.ipBuckets.get(ip, key -> new TokenBucket(this.ipCapacity, this.ipRefillPerMinute)).tryConsume()) {
+            this.ipRejections.increment();
+            throw new LoginRejectedException("Too many login attempts from this address", HttpStatus.TOO_MANY_REQUESTS);
+        }
+        if (username != null && !this.usernameBuckets.get(Usernames.key(username),
+                key -> new TokenBucket(this.usernameCapacity, this.usernameRefillPerMinute)).tryConsume()) {
+            this.usernameRejections.increment();
+            throw new LoginRejectedException("Too many login attempts for this user", HttpStatus.TOO_MANY_REQUESTS);
+        }
+    }
+
+    static class TokenBucket {
+
+        private final double capacity;
+        private final double refillPerNano;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(int capacity, int refillPerMinute) {
+            this.capacity = capacity;
+            this.refillPerNano = refillPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+            this.tokens = capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        synchronized boolean tryConsume() {
+            long now = System.nanoTime();
+            this.tokens = Math.min(this.capacity, this.tokens + (now - this.lastRefill) * this.refillPerNano);
+            this.lastRefill = now;
+            if (this.tokens < 1) {
+                return false;
+            }
+            this.tokens -= 1;
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.magadiflo.app.security;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.AuthenticationException;
+
+/**
+ * Intento de login rechazado ANTES de verificar la contraseña:
+ * por exceso de intentos (429) o porque el pool de BCrypt está saturado (503)
+ */
+public class LoginRejectedException extends AuthenticationException {
+
+    private final HttpStatus status;
+
+    public LoginRejectedException(String msg, HttpStatus status) {
+        super(msg);
+        this.status = status;
+    }
+
+    public HttpStatus getStatus() {
+        return this.status;
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.magadiflo.app.security;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * El PasswordEncoder va en su propia configuración y no en la clase principal: depende de PasswordHashPolicy,
+ * que no existe en los tests de un solo slice (@DataJpaTest), donde tampoco hace falta.
+ */
+@Configuration
+public class PasswordEncoderConfig {
+
+    /**
+     * Cada hash se guarda con el prefijo del algoritmo ({bcrypt}$2a$10$...), así queda registrado
+     * con qué algoritmo y cost se creó. Los hash antiguos sin prefijo se siguen validando con BCrypt
+     * y se migran solos cuando el usuario inicia sesión (ver PasswordUpgradingAuthenticationProvider).
+     */
+    @Bean
+    public PasswordEncoder passwordEncoder(PasswordHashPolicy passwordHashPolicy) {
+        PasswordEncoder bcrypt = new TunableBCryptPasswordEncoder(passwordHashPolicy);
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put(PasswordHashPolicy.ALGORITHM, bcrypt);
+        DelegatingPasswordEncoder passwordEncoder = new DelegatingPasswordEncoder(PasswordHashPolicy.ALGORITHM, encoders);
+        passwordEncoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return passwordEncoder;
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.magadiflo.app.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factor de trabajo (cost) objetivo de BCrypt. Cada +1 duplica el tiempo de un hash.
+ * Se puede cambiar en tiempo de ejecución (ver PasswordHashingEndpoint): los nuevos hash
+ * usan el nuevo valor y los antiguos se vuelven a calcular cuando el usuario inicia sesión.
+ * Aquí solo está el valor en memoria; el que comparten las instancias lo guarda PasswordHashPolicyStore.
+ */
+@Component
+public class PasswordHashPolicy {
+
+    public static final String ALGORITHM = "bcrypt";
+
+    private static final int MIN_STRENGTH = 4;
+    private static final int MAX_STRENGTH = 31;
+
+    private final AtomicInteger strength = new AtomicInteger();
+
+    public PasswordHashPolicy(@Value("${app.security.password.bcrypt-strength}") int strength) {
+        this.setStrength(strength);
+    }
+
+    public int getStrength() {
+        return this.strength.get();
+    }
+
+    public void setStrength(int strength) {
+        validate(strength);
+        this.strength.set(strength);
+    }
+
+    public static void validate(int strength) {
+        if (strength < MIN_STRENGTH || strength > MAX_STRENGTH) {
+            throw new IllegalArgumentException("BCrypt strength must be between " + MIN_STRENGTH + " and " + MAX_STRENGTH);
+        }
+    }
+
+}
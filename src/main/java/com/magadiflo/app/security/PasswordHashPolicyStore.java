@@ -0,0 +1,67 @@
+package com.magadiflo.app.security;
+
+import com.magadiflo.app.service.ChangeLog;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * El cost de BCrypt cambiado con PasswordHashingEndpoint se guarda en la tabla password_hash_policy,
+ * así lo usan todas las instancias y no solo la que recibió la solicitud (si no, cada instancia volvería a
+ * calcular los hash con su propio cost y los usuarios pasarían de uno a otro en cada login).
+ * Las demás instancias lo aplican en cuanto ChangeLogPoller ve el evento (y como respaldo cada sync-interval).
+ * Mientras nadie lo cambie, la fila queda en null y vale app.security.password.bcrypt-strength.
+ */
+@Slf4j
+@Component
+public class PasswordHashPolicyStore {
+
+    private final PasswordHashPolicy policy;
+    private final JdbcTemplate jdbcTemplate;
+    private final ChangeLog changeLog;
+    private final TransactionTemplate transactionTemplate;
+
+    public PasswordHashPolicyStore(PasswordHashPolicy policy, JdbcTemplate jdbcTemplate, ChangeLog changeLog,
+                                   TransactionTemplate transactionTemplate) {
+        this.policy = policy;
+        this.jdbcTemplate = jdbcTemplate;
+        this.changeLog = changeLog;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.sync();
+    }
+
+    //El evento va en la misma transacción: las demás instancias lo aplican solo si se confirma
+    public void save(int strength) {
+        PasswordHashPolicy.validate(strength);
+        this.transactionTemplate.executeWithoutResult(status -> {
+            this.jdbcTemplate.update("update password_hash_policy set strength = ? where id = 1", strength);
+            this.changeLog.append(ChangeLog.EntityType.PASSWORD_POLICY, PasswordHashPolicy.ALGORITHM);
+        });
+        this.policy.setStrength(strength);
+        log.info("BCrypt strength set to {}", strength);
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.password.sync-interval}",
+            initialDelayString = "${app.security.password.sync-interval}")
+    public void sync() {
+        Integer strength = this.jdbcTemplate.queryForObject("select strength from password_hash_policy where id = 1", Integer.class);
+        if (strength == null || strength == this.policy.getStrength()) {
+            return;
+        }
+        try {
+            this.policy.setStrength(strength);
+            log.info("BCrypt strength {} read from the database", strength);
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring the stored BCrypt strength: {}", e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.magadiflo.app.security;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * /actuator/passwordhashing
+ * GET devuelve el algoritmo y el cost actual, POST {"strength": 12} lo cambia sin reiniciar la aplicación,
+ * en todas las instancias (ver PasswordHashPolicyStore)
+ */
+@Component
+@Endpoint(id = "passwordhashing")
+@RequiredArgsConstructor
+public class PasswordHashingEndpoint {
+
+    private final PasswordHashPolicy policy;
+    private final PasswordHashPolicyStore policyStore;
+
+    @ReadOperation
+    public Map<String, Object> policy() {
+        Map<String, Object> policy = new HashMap<>();
+        policy.put("algorithm", PasswordHashPolicy.ALGORITHM);
+        policy.put("strength", this.policy.getStrength());
+        return policy;
+    }
+
+    @WriteOperation
+    public Map<String, Object> updateStrength(int strength) {
+        this.policyStore.save(strength);
+        return this.policy();
+    }
+
+}
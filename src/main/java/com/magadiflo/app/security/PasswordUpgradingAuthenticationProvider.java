@@ -0,0 +1,99 @@
+package com.magadiflo.app.security;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DaoAuthenticationProvider que, cuando el usuario inicia sesión correctamente con un hash
+ * desactualizado (sin prefijo {bcrypt} o con un cost distinto al de PasswordHashPolicy),
+ * vuelve a calcular el hash y lo guarda en segundo plano.
+ * El DaoAuthenticationProvider original lo haría en el mismo hilo del login, sumando un
+ * segundo BCrypt al tiempo de respuesta. Si la cola está llena simplemente se omite:
+ * se volverá a intentar en el siguiente login del usuario.
+ */
+@Slf4j
+public class PasswordUpgradingAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private static final int UPGRADE_QUEUE_CAPACITY = 1000;
+
+    private final UserDetailsPasswordService passwordService;
+    private final ThreadPoolExecutor upgradeExecutor;
+    private final Set<String> pendingUpgrades = ConcurrentHashMap.newKeySet();
+    private final Timer passwordCheckTimer;
+
+    public PasswordUpgradingAuthenticationProvider(UserDetailsService userDetailsService,
+                                                   UserDetailsPasswordService passwordService,
+                                                   PasswordEncoder passwordEncoder,
+                                                   SecurityMetrics securityMetrics) {
+        this.passwordService = passwordService;
+        this.passwordCheckTimer = securityMetrics.getPasswordCheckTimer();
+        this.setUserDetailsService(userDetailsService);
+        this.setPasswordEncoder(passwordEncoder);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("password-upgrade-");
+        threadFactory.setDaemon(true);
+        this.upgradeExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(UPGRADE_QUEUE_CAPACITY), threadFactory);
+    }
+
+    //Aquí la clase padre compara la contraseña con el hash (BCrypt), lo medimos por separado del resto del login
+    @Override
+    protected void additionalAuthenticationChecks(UserDetails userDetails,
+                                                  UsernamePasswordAuthenticationToken authentication)
+            throws AuthenticationException {
+        long start = System.nanoTime();
+        try {
+            super.additionalAuthenticationChecks(userDetails, authentication);
+        } finally {
+            this.passwordCheckTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    protected Authentication createSuccessAuthentication(Object principal, Authentication authentication,
+                                                         UserDetails user) {
+        //No registramos el UserDetailsPasswordService en la clase padre, así ella no hace el upgrade síncrono
+        if (this.getPasswordEncoder().upgradeEncoding(user.getPassword())
+                && this.pendingUpgrades.add(user.getUsername())) {
+            //Copiamos la contraseña ahora: ProviderManager borra las credenciales al terminar la autenticación
+            String presentedPassword = authentication.getCredentials().toString();
+            try {
+                this.upgradeExecutor.execute(() -> this.upgradePassword(user, presentedPassword));
+            } catch (RejectedExecutionException e) {
+                this.pendingUpgrades.remove(user.getUsername());
+            }
+        }
+        return super.createSuccessAuthentication(principal, authentication, user);
+    }
+
+    private void upgradePassword(UserDetails user, String presentedPassword) {
+        try {
+            this.passwordService.updatePassword(user, this.getPasswordEncoder().encode(presentedPassword));
+            log.info("Password hash of user {} upgraded", user.getUsername());
+        } catch (RuntimeException e) {
+            log.error("Error upgrading password hash of user {}: {}", user.getUsername(), e.getMessage());
+        } finally {
+            this.pendingUpgrades.remove(user.getUsername());
+        }
+    }
+
+    public void shutdown() {
+        this.upgradeExecutor.shutdown();
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.magadiflo.app.security;
+
+import com.magadiflo.app.domain.RevokedToken;
+import com.magadiflo.app.repository.IRevokedTokenRepository;
+import com.magadiflo.app.service.ChangeLog;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Tokens revocados (logout) y refresh_token ya usados, indexados por jti.
+ * La tabla revoked_tokens es la fuente de verdad (su clave primaria es el jti) y aquí se mantiene
+ * una copia en memoria para que CustomAuthorizationFilter pueda consultar en cada solicitud sin ir a la BD:
+ * - un filtro de Bloom al frente: para casi todos los tokens (los no revocados) responde "no" sin más
+ * - detrás, un ConcurrentHashMap (internamente dividido por segmentos) jti -> expiración
+ * Las revocaciones hechas en otras instancias se traen en cuanto ChangeLogPoller ve su evento
+ * (y como respaldo cada sync-interval), y las entradas vencidas se eliminan cada cleanup-interval
+ * (el filtro de Bloom se reconstruye en ese momento).
+ */
+@Slf4j
+@Component
+public class RevocationStore {
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    //Margen para las revocaciones de otras instancias que se confirmaron tarde o con el reloj desfasado
+    private static final Duration SYNC_MARGIN = Duration.ofMinutes(1);
+
+    private final IRevokedTokenRepository revokedTokenRepository;
+    private final ChangeLog changeLog;
+    private final TransactionTemplate transactionTemplate;
+    private final int expectedEntries;
+    private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<>();
+
+    private volatile BloomFilter bloomFilter;
+    //add() toma la lectura (pueden agregar varios hilos a la vez) y la reconstrucción del filtro la escritura.
+    //isRevoked() no lo toma: lee el filtro publicado en bloomFilter (volatile)
+    private final ReadWriteLock bloomFilterLock = new ReentrantReadWriteLock();
+    private Instant lastSync = Instant.EPOCH;
+
+    public RevocationStore(IRevokedTokenRepository revokedTokenRepository, ChangeLog changeLog,
+                           TransactionTemplate transactionTemplate,
+                           @Value("${app.security.revocation.expected-entries}") int expectedEntries) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.changeLog = changeLog;
+        this.transactionTemplate = transactionTemplate;
+        this.expectedEntries = expectedEntries;
+        this.bloomFilter = new BloomFilter(expectedEntries, FALSE_POSITIVE_RATE);
+    }
+
+    @PostConstruct
+    public void init() {
+        this.sync();
+    }
+
+    /**
+     * O(1) y sin tocar la BD.
+     */
+    public boolean isRevoked(String jti) {
+        if (jti == null || !this.bloomFilter.mightContain(jti)) {
+            return false;
+        }
+        Long expiresAt = this.revoked.get(jti);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    /**
+     * Revoca el token hasta su expiración. Devuelve false si ya estaba revocado (o usado),
+     * también cuando lo revocó otra instancia: así un refresh_token solo se puede usar una vez.
+     */
+    public boolean revoke(String jti, Date expiresAt) {
+        boolean revokedNow;
+        try {
+            //La fila y su evento en la misma transacción: si el jti ya existía no queda ningún evento
+            this.transactionTemplate.executeWithoutResult(status -> {
+                this.revokedTokenRepository.insert(jti, expiresAt.toInstant(), Instant.now());
+                this.changeLog.append(ChangeLog.EntityType.REVOKED_TOKEN, jti);
+            });
+            revokedNow = true;
+        } catch (DataIntegrityViolationException e) {
+            revokedNow = false;
+        }
+        this.add(jti, expiresAt.getTime());
+        return revokedNow;
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.revocation.sync-interval}",
+            initialDelayString = "${app.security.revocation.sync-interval}")
+    public synchronized void sync() {
+        Instant now = Instant.now();
+        List<RevokedToken> tokens = this.revokedTokenRepository.findRevokedSince(this.lastSync.minus(SYNC_MARGIN), now);
+        for (RevokedToken token : tokens) {
+            this.add(token.getJti(), token.getExpiresAt().toEpochMilli());
+        }
+        this.lastSync = now;
+    }
+
+    /**
+     * Elimina los tokens ya expirados (de memoria y de la BD) y reconstruye el filtro de Bloom,
+     * que no permite eliminar y se iría llenando de falsos positivos.
+     */
+    @Scheduled(fixedDelayString = "${app.security.revocation.cleanup-interval}",
+            initialDelayString = "${app.security.revocation.cleanup-interval}")
+    public synchronized void cleanup() {
+        long now = System.currentTimeMillis();
+        this.revoked.values().removeIf(expiresAt -> expiresAt <= now);
+
+        this.bloomFilterLock.writeLock().lock();
+        try {
+            BloomFilter rebuilt = new BloomFilter(Math.max(this.expectedEntries, this.revoked.size() * 2), FALSE_POSITIVE_RATE);
+            this.revoked.keySet().forEach(rebuilt::put);
+            this.bloomFilter = rebuilt;
+        } finally {
+            this.bloomFilterLock.writeLock().unlock();
+        }
+
+        int deleted = this.revokedTokenRepository.deleteExpired(Instant.ofEpochMilli(now));
+        log.debug("Revocation store cleaned up: {} entries in memory, {} deleted from the database",
+                this.revoked.size(), deleted);
+    }
+
+    public int size() {
+        return this.revoked.size();
+    }
+
+    /**
+     * Con el lock de lectura, cleanup() no puede reconstruir el filtro entre el put en el mapa y el put en el
+     * filtro: o el jti ya está en el mapa cuando cleanup() lo recorre, o se agrega al filtro ya reconstruido.
+     * Sin él, el recorrido del mapa (que no ve necesariamente lo agregado durante la iteración) podía
+     * no incluirlo y el put ir al filtro que se estaba reemplazando.
+     */
+    private void add(String jti, long expiresAtMillis) {
+        this.bloomFilterLock.readLock().lock();
+        try {
+            this.revoked.put(jti, expiresAtMillis);
+            this.bloomFilter.put(jti);
+        } finally {
+            this.bloomFilterLock.readLock().unlock();
+        }
+    }
+
+}
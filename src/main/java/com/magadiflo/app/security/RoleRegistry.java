@@ -0,0 +1,189 @@
+package com.magadiflo.app.security;
+
+import com.magadiflo.app.domain.Role;
+import com.magadiflo.app.repository.IRolRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Registro en memoria de los roles y su posición (bit_index) en la máscara de bits
+ * que viaja en el claim "rm" del access token.
+ * En lugar de enviar ["ROLE_USER","ROLE_ADMIN",...] en cada solicitud, el token lleva un número
+ * (o un Base64 si algún día hay más de 63 roles), y aquí cada máscara se traduce a una lista
+ * de authorities construida una sola vez y compartida por todas las solicitudes con esa máscara.
+ * Se recarga desde la tabla roles cada reload-interval, después de crear un rol (aquí o, vía
+ * ChangeLogPoller, en otra instancia) y cuando llega una máscara con un bit desconocido.
+ */
+@Slf4j
+@Component
+public class RoleRegistry {
+
+    //Por encima de esta cantidad de máscaras distintas dejamos de guardarlas (no debería pasar)
+    private static final int MAX_CACHED_MASKS = 10_000;
+    private static final Duration MIN_RELOAD_INTERVAL = Duration.ofSeconds(5);
+
+    private final IRolRepository rolRepository;
+
+    private volatile Registry registry = new Registry(Collections.emptyList());
+    private volatile Instant lastReload = Instant.EPOCH;
+
+    public RoleRegistry(IRolRepository rolRepository) {
+        this.rolRepository = rolRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.reload();
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.roles.reload-interval}",
+            initialDelayString = "${app.security.roles.reload-interval}")
+    public synchronized void reload() {
+        this.registry = new Registry(this.rolRepository.findByBitIndexNotNull());
+        this.lastReload = Instant.now();
+        log.debug("Role registry loaded");
+    }
+
+    /**
+     * Recarga cuando se confirme la transacción en curso (si no hay una, de inmediato).
+     */
+    public void reloadAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reload();
+                }
+            });
+        } else {
+            this.reload();
+        }
+    }
+
+    public BitSet toMask(Collection<String> roleNames) {
+        BitSet mask = new BitSet();
+        for (String roleName : roleNames) {
+            Integer bitIndex = this.registry.bitByName.get(roleName);
+            if (bitIndex == null && this.reloadIfStale()) {
+                bitIndex = this.registry.bitByName.get(roleName);
+            }
+            if (bitIndex == null) {
+                log.warn("Role {} has no bit index, it is left out of the token", roleName);
+                continue;
+            }
+            mask.set(bitIndex);
+        }
+        return mask;
+    }
+
+    //Para máscaras de más de 63 bits, tal como viajan en el claim
+    public static String encode(BitSet mask) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(mask.toByteArray());
+    }
+
+    public List<GrantedAuthority> getAuthorities(long mask) {
+        List<GrantedAuthority> authorities = this.registry.byLongMask.get(mask);
+        if (authorities == null) {
+            authorities = this.build(BitSet.valueOf(new long[]{mask}), registry -> registry.byLongMask, mask);
+        }
+        return authorities;
+    }
+
+    public List<GrantedAuthority> getAuthorities(String encodedMask) {
+        List<GrantedAuthority> authorities = this.registry.byEncodedMask.get(encodedMask);
+        if (authorities == null) {
+            authorities = this.build(BitSet.valueOf(Base64.getUrlDecoder().decode(encodedMask)),
+                    registry -> registry.byEncodedMask, encodedMask);
+        }
+        return authorities;
+    }
+
+    private <K> List<GrantedAuthority> build(BitSet mask, Function<Registry, Map<K, List<GrantedAuthority>>> cacheOf, K key) {
+        Registry current = this.registry;
+        if (!current.knowsAll(mask) && this.reloadIfStale()) {
+            current = this.registry;
+        }
+        List<GrantedAuthority> authorities = new ArrayList<>(mask.cardinality());
+        boolean complete = true;
+        for (int bit = mask.nextSetBit(0); bit >= 0; bit = mask.nextSetBit(bit + 1)) {
+            GrantedAuthority authority = bit < current.authorityByBit.length ? current.authorityByBit[bit] : null;
+            if (authority == null) {
+                log.warn("Unknown role bit {} in token", bit);
+                complete = false;
+            } else {
+                authorities.add(authority);
+            }
+        }
+        authorities = Collections.unmodifiableList(authorities);
+        //Solo se guarda si todos los bits son conocidos, así se vuelve a intentar cuando el rol exista.
+        //Se guarda en la caché del registro con el que se armó, que se descarta junto con él al recargar
+        if (complete && current.cachedMasks() < MAX_CACHED_MASKS) {
+            List<GrantedAuthority> previous = cacheOf.apply(current).putIfAbsent(key, authorities);
+            if (previous != null) {
+                authorities = previous;
+            }
+        }
+        return authorities;
+    }
+
+    private synchronized boolean reloadIfStale() {
+        if (this.lastReload.plus(MIN_RELOAD_INTERVAL).isAfter(Instant.now())) {
+            return false;
+        }
+        this.reload();
+        return true;
+    }
+
+    private static class Registry {
+
+        private final Map<String, Integer> bitByName = new HashMap<>();
+        private final GrantedAuthority[] authorityByBit;
+        private final ConcurrentHashMap<Long, List<GrantedAuthority>> byLongMask = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, List<GrantedAuthority>> byEncodedMask = new ConcurrentHashMap<>();
+
+        Registry(List<Role> roles) {
+            int maxBit = -1;
+            for (Role role : roles) {
+                maxBit = Math.max(maxBit, role.getBitIndex());
+            }
+            this.authorityByBit = new GrantedAuthority[maxBit + 1];
+            for (Role role : roles) {
+                this.bitByName.put(role.getName(), role.getBitIndex());
+                this.authorityByBit[role.getBitIndex()] = new SimpleGrantedAuthority(role.getName());
+            }
+        }
+
+        boolean knowsAll(BitSet mask) {
+            for (int bit = mask.nextSetBit(0); bit >= 0; bit = mask.nextSetBit(bit + 1)) {
+                if (bit >= this.authorityByBit.length || this.authorityByBit[bit] == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int cachedMasks() {
+            return this.byLongMask.size() + this.byEncodedMask.size();
+        }
+    }
+
+}
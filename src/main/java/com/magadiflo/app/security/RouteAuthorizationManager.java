@@ -0,0 +1,32 @@
+package com.magadiflo.app.security;
+
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import java.util.function.Supplier;
+
+/**
+ * Reemplaza la cadena de antMatchers: decide el acceso a cada solicitud con la regla de RouteTable
+ * (la misma que ya resolvió CustomAuthorizationFilter para esa solicitud).
+ */
+public class RouteAuthorizationManager implements AuthorizationManager<RequestAuthorizationContext> {
+
+    private static final AuthorizationDecision GRANTED = new AuthorizationDecision(true);
+    private static final AuthorizationDecision DENIED = new AuthorizationDecision(false);
+
+    private final RouteTable routeTable;
+
+    public RouteAuthorizationManager(RouteTable routeTable) {
+        this.routeTable = routeTable;
+    }
+
+    @Override
+    public AuthorizationDecision check(Supplier<Authentication> authentication, RequestAuthorizationContext context) {
+        RouteTable.Route route = this.routeTable.match(context.getRequest());
+        //En las rutas públicas ni siquiera se obtiene la autenticación
+        return route.isPublic() || route.isGranted(authentication.get()) ? GRANTED : DENIED;
+    }
+
+}
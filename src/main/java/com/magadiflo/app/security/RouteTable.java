@@ -0,0 +1,193 @@
+package com.magadiflo.app.security;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.security.authentication.AuthenticationTrustResolver;
+import org.springframework.security.authentication.AuthenticationTrustResolverImpl;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reglas de acceso por método y path, armadas una sola vez al arrancar en un árbol por segmentos (trie).
+ * Con la cadena de antMatchers cada solicitud probaba las reglas una por una, en orden; aquí se recorren
+ * los segmentos del path (/api/users/martin -> api, users, martin), así el costo depende de la profundidad
+ * del path y no de la cantidad de reglas.
+ * Los patrones admitidos son un path exacto (/.well-known/jwks.json) o un prefijo (/api/users/**, que también
+ * incluye a /api/users). Si varias reglas aplican gana la más específica: la exacta, luego el prefijo más largo.
+ * Lo que no coincide con ninguna regla solo requiere estar autenticado.
+ */
+public class RouteTable {
+
+    //La ruta ya resuelta se guarda en la solicitud: CustomAuthorizationFilter y RouteAuthorizationManager
+    //la necesitan, y así se busca una sola vez
+    private static final String ROUTE_ATTRIBUTE = RouteTable.class.getName() + ".ROUTE";
+    private static final String ANY_METHOD = "*";
+    private static final AuthenticationTrustResolver TRUST_RESOLVER = new AuthenticationTrustResolverImpl();
+
+    public static final Route AUTHENTICATED = new Route(false, Collections.emptySet());
+
+    private final Node root;
+
+    private RouteTable(Node root) {
+        this.root = root;
+    }
+
+    public Route match(HttpServletRequest request) {
+        Route route = (Route) request.getAttribute(ROUTE_ATTRIBUTE);
+        if (route == null) {
+            String path = request.getPathInfo() == null
+                    ? request.getServletPath()
+                    : request.getServletPath() + request.getPathInfo();
+            route = this.match(request.getMethod(), path);
+            request.setAttribute(ROUTE_ATTRIBUTE, route);
+        }
+        return route;
+    }
+
+    public Route match(String method, String path) {
+        Node node = this.root;
+        Route best = node.prefixRoute(method);
+        int start = 0;
+        int length = path.length();
+        while (start < length) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) { //Segmentos vacíos (// o la barra final) no cuentan
+                node = node.children.get(path.substring(start, end));
+                if (node == null) {
+                    return best == null ? AUTHENTICATED : best;
+                }
+                Route prefix = node.prefixRoute(method);
+                if (prefix != null) {
+                    best = prefix;
+                }
+            }
+            start = end + 1;
+        }
+        Route exact = node.exactRoute(method);
+        if (exact != null) {
+            return exact;
+        }
+        return best == null ? AUTHENTICATED : best;
+    }
+
+    public static class Route {
+
+        private final boolean publicRoute;
+        private final Set<String> authorities;
+
+        private Route(boolean publicRoute, Set<String> authorities) {
+            this.publicRoute = publicRoute;
+            this.authorities = authorities;
+        }
+
+        //No requiere token: CustomAuthorizationFilter ni siquiera lo mira
+        public boolean isPublic() {
+            return this.publicRoute;
+        }
+
+        public Set<String> getAuthorities() {
+            return this.authorities;
+        }
+
+        public boolean isGranted(Authentication authentication) {
+            if (this.publicRoute) {
+                return true;
+            }
+            if (authentication == null || !authentication.isAuthenticated()
+                    || TRUST_RESOLVER.isAnonymous(authentication)) {
+                return false;
+            }
+            if (this.authorities.isEmpty()) {
+                return true;
+            }
+            for (GrantedAuthority authority : authentication.getAuthorities()) {
+                if (this.authorities.contains(authority.getAuthority())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    public static class Builder {
+
+        private final Node root = new Node();
+
+        public Builder permitAll(String... patterns) {
+            return this.add(null, patterns, new Route(true, Collections.emptySet()));
+        }
+
+        public Builder permitAll(HttpMethod method, String... patterns) {
+            return this.add(method, patterns, new Route(true, Collections.emptySet()));
+        }
+
+        public Builder hasAnyAuthority(String pattern, String... authorities) {
+            return this.hasAnyAuthority(null, pattern, authorities);
+        }
+
+        public Builder hasAnyAuthority(HttpMethod method, String pattern, String... authorities) {
+            Set<String> required = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(authorities)));
+            return this.add(method, new String[]{pattern}, new Route(false, required));
+        }
+
+        public RouteTable build() {
+            return new RouteTable(this.root);
+        }
+
+        private Builder add(HttpMethod method, String[] patterns, Route route) {
+            String methodKey = method == null ? ANY_METHOD : method.name();
+            for (String pattern : patterns) {
+                boolean prefix = pattern.endsWith("/**");
+                String path = prefix ? pattern.substring(0, pattern.length() - 3) : pattern;
+                if (!path.startsWith("/") || path.contains("*") || path.contains("{")) {
+                    throw new IllegalArgumentException("Unsupported route pattern: " + pattern);
+                }
+                Node node = this.root;
+                for (String segment : path.split("/")) {
+                    if (!segment.isEmpty()) {
+                        node = node.children.computeIfAbsent(segment, key -> new Node());
+                    }
+                }
+                Map<String, Route> routes = prefix ? node.prefixRoutes : node.exactRoutes;
+                if (routes.putIfAbsent(methodKey, route) != null) {
+                    throw new IllegalArgumentException("Duplicate route: " + methodKey + " " + pattern);
+                }
+            }
+            return this;
+        }
+    }
+
+    private static class Node {
+
+        private final Map<String, Node> children = new HashMap<>();
+        private final Map<String, Route> exactRoutes = new HashMap<>();
+        private final Map<String, Route> prefixRoutes = new HashMap<>();
+
+        Route exactRoute(String method) {
+            return route(this.exactRoutes, method);
+        }
+
+        Route prefixRoute(String method) {
+            return route(this.prefixRoutes, method);
+        }
+
+        private static Route route(Map<String, Route> routes, String method) {
+            if (routes.isEmpty()) {
+                return null;
+            }
+            Route route = routes.get(method);
+            return route != null ? route : routes.get(ANY_METHOD);
+        }
+    }
+
+}
@@ -12,16 +12,17 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 /**
  * @RequiredArgsConstructor, Creará un constructor para nosotros sobre la marcha y luego inyectará
  * a este tipo UserDetailsService dentro del constructor, ya que es un atributo de la clase.
  * Esta es la forma en la que hacemos nuestra inyección de dependencia.
- * El atributo bCryptPasswordEncoder, también será inyectado vía constructor (similar al userDetailsService)
- * ya que en la clase principal del proyecto se definió el @Bean
+ * El atributo passwordEncoder, también será inyectado vía constructor (similar al userDetailsService)
+ * ya que en PasswordEncoderConfig se definió el @Bean
  * NOTA: Recordar que otra forma es haciendo uso de la anotación @Autowired
  */
 @Configuration //Porque estamos en una clase de configuración
@@ -42,7 +43,14 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     //En este caso concreto, no usamos el @Autowired, sino la inyección por constructor
     //el cual nos es facilitada por el @RequiredArgsConstructor de lombok
     private final UserDetailsService userDetailsService;
-    private final BCryptPasswordEncoder bCryptPasswordEncoder;
+    private final UserDetailsPasswordService userDetailsPasswordService;
+    private final PasswordEncoder passwordEncoder;
+    private final JwtTokenProvider tokenProvider;
+    private final AccessTokenCache accessTokenCache;
+    private final LoginRateLimiter loginRateLimiter;
+    private final LoginExecutor loginExecutor;
+    private final TokenResponseWriter tokenResponseWriter;
+    private final SecurityMetrics securityMetrics;
 
     //Configuración del manejo de usuarios.
     // Hay muchas maneras de decirle a Spring cómo buscar a los usuarios.
@@ -50,25 +58,32 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     // 2° Usando JDBC
     // 3° JPA con el UserDetailsService
     // etc...
+    //Usamos la 3° a través de nuestro propio AuthenticationProvider (un DaoAuthenticationProvider con el UserDetailsService)
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.userDetailsService(this.userDetailsService).passwordEncoder(this.bCryptPasswordEncoder);
+        auth.authenticationProvider(this.authenticationProvider());
+    }
+
+    //Además de verificar la contraseña, vuelve a calcular en segundo plano los hash desactualizados
+    @Bean(destroyMethod = "shutdown")
+    public PasswordUpgradingAuthenticationProvider authenticationProvider() {
+        return new PasswordUpgradingAuthenticationProvider(this.userDetailsService, this.userDetailsPasswordService,
+                this.passwordEncoder, this.securityMetrics);
     }
 
     //Configuración de la seguridad Global del sistema
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         //Creando nuestra propio path de login que por defecto en Spring es /login
-        CustomAuthenticationFilter customAuthenticationFilter = new CustomAuthenticationFilter(this.authenticationManager());
+        CustomAuthenticationFilter customAuthenticationFilter = new CustomAuthenticationFilter(this.authenticationManager(), this.tokenProvider,
+                this.loginRateLimiter, this.loginExecutor, this.tokenResponseWriter, this.securityMetrics);
         customAuthenticationFilter.setFilterProcessesUrl("/api/login");
 
 
         http.csrf().disable(); //Deshabilitamos la falsificación de solicitudes entre sitios porque no estamos trabajando con formularios
         http.sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS);//No estamos trabajando con sesiones que es como se trabaja cuando en el servidor se renderizan las vistas
-        http.authorizeRequests().antMatchers("/api/login/**", "/api/token/refresh/**").permitAll();
-        http.authorizeRequests().antMatchers(HttpMethod.GET, "/api/users/**").hasAnyAuthority("ROLE_USER");
-        http.authorizeRequests().antMatchers(HttpMethod.POST, "/api/user/save/**").hasAnyAuthority("ROLE_ADMIN");
-        http.authorizeRequests().anyRequest().authenticated(); //Autorice las solicitudes y que esté autenticado
+        //Las reglas de acceso están en routeTable(), aquí solo se le dice a Spring Security que las use
+        http.authorizeHttpRequests().anyRequest().access(new RouteAuthorizationManager(this.routeTable()));
         //Agregamos un filtro de autenticación para poder verificar al usuario cada vez que intenta iniciar sesión
         http.addFilter(customAuthenticationFilter);
 
@@ -89,7 +104,30 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
         //.......
         //La finalidad de ese filtro es verificar el token que se está pasando, si va bien crear manualmente el
         //UsernamePasswordAuthenticationToken, y luego el SecurityContextHolder
-        http.addFilterBefore(new CustomAuthorizationFilter(), UsernamePasswordAuthenticationFilter.class);
+        http.addFilterBefore(new CustomAuthorizationFilter(this.routeTable(), this.accessTokenCache,
+                this.tokenResponseWriter, this.securityMetrics), UsernamePasswordAuthenticationFilter.class);
+    }
+
+    /**
+     * Quién puede acceder a cada endpoint. Se arma una sola vez (ver RouteTable); si varias reglas
+     * aplican a una solicitud gana la más específica, sin importar el orden en que se declaran.
+     */
+    @Bean
+    public RouteTable routeTable() {
+        return new RouteTable.Builder()
+                .permitAll("/api/login/**", "/api/token/refresh/**")
+                .permitAll(HttpMethod.GET, "/.well-known/jwks.json")
+                //Para el health check y para que Prometheus pueda leer las métricas (en producción se limita por red)
+                .permitAll(HttpMethod.GET, "/actuator/health/**", "/actuator/prometheus")
+                .hasAnyAuthority(HttpMethod.POST, "/api/token/introspect", "ROLE_GATEWAY")
+                .hasAnyAuthority(HttpMethod.GET, "/api/users/**", "ROLE_USER")
+                .hasAnyAuthority(HttpMethod.GET, "/api/roles/**", "ROLE_USER")
+                .hasAnyAuthority(HttpMethod.POST, "/api/users/import/**", "ROLE_ADMIN")
+                .hasAnyAuthority(HttpMethod.POST, "/api/role/assignments/**", "ROLE_ADMIN")
+                .hasAnyAuthority(HttpMethod.POST, "/api/user/save/**", "ROLE_ADMIN")
+                .hasAnyAuthority("/actuator/passwordhashing/**", "ROLE_SUPER_ADMIN")
+                .hasAnyAuthority("/actuator/startup/**", "ROLE_SUPER_ADMIN")
+                .build();
     }
 
     @Override
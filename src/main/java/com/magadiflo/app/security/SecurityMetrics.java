@@ -0,0 +1,115 @@
+package com.magadiflo.app.security;
+
+import com.auth0.jwt.exceptions.AlgorithmMismatchException;
+import com.auth0.jwt.exceptions.JWTDecodeException;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.exceptions.SignatureVerificationException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Métricas (Micrometer) de la cadena de seguridad, publicadas en /actuator/prometheus.
+ * - security.login{outcome}: intento de login completo (rate limit, cola, BCrypt)
+ * - security.login.password.check: solo la verificación BCrypt de la contraseña
+ * - security.token.sign{type}: firma del access_token o del refresh_token
+ * - security.token.verify: verificación de la firma y decodificación (solo cuando el token no está en caché)
+ * - security.authorization{outcome}: lo que CustomAuthorizationFilter suma a cada solicitud
+ * - security.authorization.failures{reason}: tokens rechazados, por motivo
+ * Los histogramas para los percentiles (p99) se activan en application.properties
+ * (management.metrics.distribution.percentiles-histogram.security).
+ */
+@Component
+public class SecurityMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final Timer loginSuccess;
+    private final Timer loginFailure;
+    private final Timer loginRejected;
+    private final Timer passwordCheck;
+    private final Timer accessTokenSigning;
+    private final Timer refreshTokenSigning;
+    private final Timer tokenVerification;
+    private final Timer authorizationSuccess;
+    private final Timer authorizationFailure;
+
+    public SecurityMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.loginSuccess = meterRegistry.timer("security.login", "outcome", "success");
+        this.loginFailure = meterRegistry.timer("security.login", "outcome", "failure");
+        this.loginRejected = meterRegistry.timer("security.login", "outcome", "rejected");
+        this.passwordCheck = meterRegistry.timer("security.login.password.check");
+        this.accessTokenSigning = meterRegistry.timer("security.token.sign", "type", "access");
+        this.refreshTokenSigning = meterRegistry.timer("security.token.sign", "type", "refresh");
+        this.tokenVerification = meterRegistry.timer("security.token.verify");
+        this.authorizationSuccess = meterRegistry.timer("security.authorization", "outcome", "success");
+        this.authorizationFailure = meterRegistry.timer("security.authorization", "outcome", "failure");
+    }
+
+    public MeterRegistry getMeterRegistry() {
+        return this.meterRegistry;
+    }
+
+    public void recordLoginSuccess(long startNanos) {
+        this.loginSuccess.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordLoginFailure(long startNanos, Exception failure) {
+        Timer timer = failure instanceof LoginRejectedException ? this.loginRejected : this.loginFailure;
+        timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public Timer getPasswordCheckTimer() {
+        return this.passwordCheck;
+    }
+
+    public Timer getAccessTokenSigningTimer() {
+        return this.accessTokenSigning;
+    }
+
+    public Timer getRefreshTokenSigningTimer() {
+        return this.refreshTokenSigning;
+    }
+
+    public Timer getTokenVerificationTimer() {
+        return this.tokenVerification;
+    }
+
+    public void recordAuthorizationSuccess(long startNanos) {
+        this.authorizationSuccess.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordAuthorizationFailure(long startNanos, Exception failure) {
+        this.authorizationFailure.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        this.meterRegistry.counter("security.authorization.failures", "reason", failureReason(failure)).increment();
+    }
+
+    private static String failureReason(Exception failure) {
+        if (failure instanceof TokenExpiredException) {
+            return "expired";
+        }
+        if (failure instanceof TokenRevokedException) {
+            return "revoked";
+        }
+        if (failure instanceof WrongTokenTypeException) {
+            return "wrong_token_type";
+        }
+        if (failure instanceof UnknownSigningKeyException) {
+            return "unknown_key";
+        }
+        if (failure instanceof SignatureVerificationException || failure instanceof AlgorithmMismatchException) {
+            return "invalid_signature";
+        }
+        if (failure instanceof JWTDecodeException) {
+            return "malformed";
+        }
+        if (failure instanceof JWTVerificationException) {
+            return "invalid_claim";
+        }
+        return "error";
+    }
+
+}
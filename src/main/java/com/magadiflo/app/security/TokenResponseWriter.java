@@ -0,0 +1,51 @@
+package com.magadiflo.app.security;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Escribe las respuestas JSON de los tokens y de los errores de seguridad.
+ * Antes cada respuesta creaba un HashMap y un ObjectMapper nuevo (la forma más cara de usar Jackson).
+ * Aquí se comparte el JsonFactory del ObjectMapper de Spring (thread-safe, recicla sus buffers)
+ * y los campos se escriben directamente en el output stream del response, sin mapas intermedios.
+ * El JsonGenerator no es thread-safe, por eso se crea uno (muy barato) por respuesta.
+ */
+@Component
+public class TokenResponseWriter {
+
+    private final JsonFactory jsonFactory;
+
+    public TokenResponseWriter(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    public void writeTokens(HttpServletResponse response, String accessToken, String refreshToken) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator generator = this.jsonFactory.createGenerator(response.getOutputStream())) {
+            generator.writeStartObject();
+            generator.writeStringField("access_token", accessToken);
+            generator.writeStringField("refresh_token", refreshToken);
+            generator.writeEndObject();
+        }
+    }
+
+    //Devolverá el error_message dentro del cuerpo de la respuesta en formato JSON (y también en la cabecera error)
+    public void writeError(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setHeader("error", message);
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator generator = this.jsonFactory.createGenerator(response.getOutputStream())) {
+            generator.writeStartObject();
+            generator.writeStringField("error_message", message);
+            generator.writeEndObject();
+        }
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.magadiflo.app.security;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+
+/**
+ * El token es válido pero fue revocado (logout) o, si es un refresh_token, ya se usó.
+ */
+public class TokenRevokedException extends JWTVerificationException {
+
+    public TokenRevokedException(String message) {
+        super(message);
+    }
+
+}
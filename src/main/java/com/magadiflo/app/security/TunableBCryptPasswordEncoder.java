@@ -0,0 +1,46 @@
+package com.magadiflo.app.security;
+
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt cuyo factor de trabajo se lee de PasswordHashPolicy en cada encode.
+ * El cost queda guardado dentro de cada hash ($2a$10$...), así matches funciona con cualquier cost
+ * y upgradeEncoding indica si el hash fue creado con un cost distinto al objetivo (mayor o menor).
+ */
+public class TunableBCryptPasswordEncoder implements PasswordEncoder {
+
+    private static final Pattern BCRYPT_PATTERN = Pattern.compile("\\A\\$2[abxy]?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+
+    private final PasswordHashPolicy policy;
+
+    public TunableBCryptPasswordEncoder(PasswordHashPolicy policy) {
+        this.policy = policy;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return BCrypt.hashpw(rawPassword.toString(), BCrypt.gensalt(this.policy.getStrength()));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null || !BCRYPT_PATTERN.matcher(encodedPassword).matches()) {
+            return false;
+        }
+        return BCrypt.checkpw(rawPassword.toString(), encodedPassword);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_PATTERN.matcher(encodedPassword);
+        return matcher.matches() && Integer.parseInt(matcher.group(1)) != this.policy.getStrength();
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.magadiflo.app.security;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+
+/**
+ * El kid del token no corresponde a ninguna clave vigente de JwtKeyManager.
+ */
+public class UnknownSigningKeyException extends JWTVerificationException {
+
+    public UnknownSigningKeyException(String message) {
+        super(message);
+    }
+
+}
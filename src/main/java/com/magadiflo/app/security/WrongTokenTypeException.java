@@ -0,0 +1,14 @@
+package com.magadiflo.app.security;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+
+/**
+ * El token es válido pero no es del tipo que se espera: un refresh_token usado como access_token o al revés.
+ */
+public class WrongTokenTypeException extends JWTVerificationException {
+
+    public WrongTokenTypeException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.magadiflo.app.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Escritura en la tabla change_log: qué usuario, rol o token cambió, para que las demás instancias
+ * invaliden lo que tienen en memoria (ver ChangeLogPoller). No hay un broker aparte: la misma BD es el bus.
+ * Se llama dentro de la transacción de la escritura, así el evento existe solo si la escritura se confirma.
+ */
+@Component
+public class ChangeLog {
+
+    public enum EntityType {
+        USER,           //entity_key: username
+        ROLE,           //entity_key: nombre del rol
+        REVOKED_TOKEN,  //entity_key: jti
+        PASSWORD_POLICY //entity_key: algoritmo (bcrypt)
+    }
+
+    private static final String INSERT = "insert into change_log (entity_type, entity_key) values (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ChangeLog(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void append(EntityType type, String key) {
+        this.jdbcTemplate.update(INSERT, type.name(), key);
+    }
+
+    //Un solo batch JDBC para muchos eventos (asignación masiva de roles, importación)
+    public void appendAll(EntityType type, Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        List<Object[]> batchArgs = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            batchArgs.add(new Object[]{type.name(), key});
+        }
+        this.jdbcTemplate.batchUpdate(INSERT, batchArgs);
+    }
+
+}
@@ -0,0 +1,264 @@
+package com.magadiflo.app.service;
+
+import com.magadiflo.app.domain.Role;
+import com.magadiflo.app.domain.User;
+import com.magadiflo.app.dto.UserIdRow;
+import com.magadiflo.app.repository.IUserRepository;
+import com.magadiflo.app.security.PasswordHashPolicyStore;
+import com.magadiflo.app.security.RevocationStore;
+import com.magadiflo.app.security.RoleRegistry;
+import com.magadiflo.app.service.ChangeLog.EntityType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lee la tabla change_log (ver ChangeLog) en cada instancia y aplica las invalidaciones de lo que
+ * cambió en cualquier otra (o en la variante reactiva):
+ * - USER: caché de credenciales, y el usuario y sus roles en la caché de segundo nivel de Hibernate
+ * - ROLE: caché de segundo nivel y de consultas de roles, y RoleRegistry
+ * - REVOKED_TOKEN: RevocationStore se sincroniza en ese momento
+ * - PASSWORD_POLICY: el cost de BCrypt se vuelve a leer (PasswordHashPolicyStore)
+ * - cualquiera: DataVersion (ETag de los listados)
+ * Cada lectura trae los eventos con id mayor al último visto y los huecos pendientes (ver Cursor), ambos por
+ * la clave primaria, y los aplica por lotes: una sola recarga o sincronización por tipo, sin importar cuántos
+ * eventos trajo.
+ * Las recargas y sincronizaciones periódicas de cada componente se mantienen como respaldo.
+ */
+@Slf4j
+@Component
+public class ChangeLogPoller {
+
+    private static final String USER_ROLES_COLLECTION = User.class.getName() + ".roles";
+
+    private static final String SELECT_EVENTS =
+            "select id, entity_type, entity_key, created_at, current_timestamp(6) from change_log ";
+
+    private static final RowMapper<ChangeEvent> CHANGE_EVENT_MAPPER = (rs, rowNum) -> new ChangeEvent(
+            rs.getLong(1), rs.getString(2), rs.getString(3), rs.getTimestamp(4), rs.getTimestamp(5));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IUserRepository userRepository;
+    private final UserCredentialsCache credentialsCache;
+    private final RoleRegistry roleRegistry;
+    private final RevocationStore revocationStore;
+    private final PasswordHashPolicyStore passwordHashPolicyStore;
+    private final DataVersion dataVersion;
+    private final EntityManagerFactory entityManagerFactory;
+    private final int batchSize;
+    private final Duration retention;
+    private final Cursor cursor;
+
+    //Desde que el evento se escribió hasta que esta instancia lo aplicó, ambos medidos con el reloj de la BD
+    private final Timer lag;
+    private final Map<EntityType, Counter> applied = new EnumMap<>(EntityType.class);
+
+    public ChangeLogPoller(JdbcTemplate jdbcTemplate, IUserRepository userRepository,
+                           UserCredentialsCache credentialsCache, RoleRegistry roleRegistry,
+                           RevocationStore revocationStore, PasswordHashPolicyStore passwordHashPolicyStore,
+                           DataVersion dataVersion,
+                           EntityManagerFactory entityManagerFactory, MeterRegistry meterRegistry,
+                           @Value("${app.change-log.batch-size}") int batchSize,
+                           @Value("${app.change-log.gap-timeout}") Duration gapTimeout,
+                           @Value("${app.change-log.retention}") Duration retention) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userRepository = userRepository;
+        this.credentialsCache = credentialsCache;
+        this.roleRegistry = roleRegistry;
+        this.revocationStore = revocationStore;
+        this.passwordHashPolicyStore = passwordHashPolicyStore;
+        this.dataVersion = dataVersion;
+        this.entityManagerFactory = entityManagerFactory;
+        this.batchSize = batchSize;
+        this.retention = retention;
+        this.cursor = new Cursor(gapTimeout.toNanos());
+        this.lag = Timer.builder("change_log.lag").register(meterRegistry);
+        for (EntityType type : EntityType.values()) {
+            this.applied.put(type, meterRegistry.counter("change_log.events", "type", type.name().toLowerCase()));
+        }
+        meterRegistry.gauge("change_log.gaps", this.cursor, Cursor::pendingGaps);
+    }
+
+    //Al arrancar las cachés están vacías: solo interesa lo que cambie de aquí en adelante
+    @PostConstruct
+    public void init() {
+        Long maxId = this.jdbcTemplate.queryForObject("select max(id) from change_log", Long.class);
+        this.cursor.start(maxId == null ? 0 : maxId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.change-log.poll-interval}",
+            initialDelayString = "${app.change-log.poll-interval}")
+    public synchronized void poll() {
+        //Los huecos pendientes se consultan aparte, por id: la lectura de los nuevos siempre avanza,
+        //aunque detrás de un hueco ya haya más de batchSize eventos
+        List<ChangeEvent> events = new ArrayList<>();
+        List<Long> gaps = this.cursor.gapIds();
+        for (int from = 0; from < gaps.size(); from += this.batchSize) {
+            List<Long> ids = gaps.subList(from, Math.min(from + this.batchSize, gaps.size()));
+            events.addAll(this.jdbcTemplate.query(
+                    SELECT_EVENTS + "where id in (" + String.join(",", Collections.nCopies(ids.size(), "?")) + ")",
+                    CHANGE_EVENT_MAPPER, ids.toArray()));
+        }
+        events.addAll(this.jdbcTemplate.query(SELECT_EVENTS + "where id > ? order by id limit ?",
+                CHANGE_EVENT_MAPPER, this.cursor.lastSeen(), this.batchSize));
+
+        long now = System.nanoTime();
+        Map<EntityType, Set<String>> batch = new EnumMap<>(EntityType.class);
+        List<ChangeEvent> accepted = new ArrayList<>();
+        for (ChangeEvent event : events) {
+            if (!this.cursor.accept(event.getId(), now)) {
+                continue; //Ya aplicado (no debería pasar: cada id se pide una sola vez mientras falta)
+            }
+            EntityType type;
+            try {
+                type = EntityType.valueOf(event.getEntityType());
+            } catch (IllegalArgumentException e) {
+                log.warn("Unknown change log entity type {} (id {})", event.getEntityType(), event.getId());
+                continue;
+            }
+            batch.computeIfAbsent(type, key -> new LinkedHashSet<>()).add(event.getEntityKey());
+            accepted.add(event);
+        }
+        this.cursor.expireGaps(now);
+
+        if (!batch.isEmpty()) {
+            this.apply(batch);
+            for (ChangeEvent event : accepted) {
+                this.lag.record(Math.max(0, event.getReadAt().getTime() - event.getCreatedAt().getTime()), TimeUnit.MILLISECONDS);
+            }
+            batch.forEach((type, keys) -> this.applied.get(type).increment(keys.size()));
+            log.debug("Applied {} change log events up to id {}", accepted.size(), this.cursor.lastSeen());
+        }
+    }
+
+    private void apply(Map<EntityType, Set<String>> batch) {
+        Cache cache = this.entityManagerFactory.getCache().unwrap(Cache.class);
+        Set<String> usernames = batch.get(EntityType.USER);
+        if (usernames != null) {
+            usernames.forEach(this.credentialsCache::invalidate);
+            //El natural id (username -> id) no cambia, basta con el usuario y sus roles
+            for (UserIdRow row : this.userRepository.findIdsByUsernameIn(usernames)) {
+                cache.evictEntityData(User.class, row.getId());
+                cache.evictCollectionData(USER_ROLES_COLLECTION, row.getId());
+            }
+        }
+        if (batch.containsKey(EntityType.ROLE)) {
+            //Primero la caché de consultas: la recarga de RoleRegistry usa una consulta cacheada
+            cache.evictEntityData(Role.class);
+            cache.evictDefaultQueryRegion();
+            this.roleRegistry.reload();
+        }
+        if (batch.containsKey(EntityType.REVOKED_TOKEN)) {
+            this.revocationStore.sync();
+        }
+        if (batch.containsKey(EntityType.PASSWORD_POLICY)) {
+            this.passwordHashPolicyStore.sync();
+        }
+        this.dataVersion.sync();
+    }
+
+    /**
+     * Los eventos aplicados por todas las instancias ya no sirven. Una instancia que estuvo caída
+     * más que retention no los necesita: al arrancar empieza desde el último id.
+     */
+    @Scheduled(fixedDelayString = "${app.change-log.cleanup-interval}",
+            initialDelayString = "${app.change-log.cleanup-interval}")
+    public void cleanup() {
+        int deleted = this.jdbcTemplate.update("delete from change_log where created_at < ?",
+                Timestamp.from(Instant.now().minus(this.retention)));
+        log.debug("{} change log events deleted", deleted);
+    }
+
+    /**
+     * Hasta qué id se aplicaron los eventos. Un id de auto_increment se asigna al insertar pero se ve recién
+     * con el commit, así que un id menor puede aparecer después de uno mayor: si entre dos eventos falta un id
+     * se recuerda como hueco y se vuelve a pedir en cada lectura, hasta que aparezca o pase gap-timeout
+     * (la transacción hizo rollback y ese id no va a existir). Supone auto_increment_increment = 1.
+     */
+    static class Cursor {
+
+        //Un salto mayor no es una transacción en curso (p. ej. ids reservados y descartados por InnoDB)
+        private static final int MAX_TRACKED_GAP = 1000;
+
+        private final long gapTimeoutNanos;
+        //id faltante -> cuándo se detectó (System.nanoTime)
+        private final TreeMap<Long, Long> gaps = new TreeMap<>();
+        private long lastSeen;
+
+        Cursor(long gapTimeoutNanos) {
+            this.gapTimeoutNanos = gapTimeoutNanos;
+        }
+
+        void start(long lastId) {
+            this.lastSeen = lastId;
+            this.gaps.clear();
+        }
+
+        //true si el evento no se había aplicado todavía
+        boolean accept(long id, long nowNanos) {
+            if (id > this.lastSeen) {
+                if (id - this.lastSeen - 1 <= MAX_TRACKED_GAP) {
+                    for (long missing = this.lastSeen + 1; missing < id; missing++) {
+                        this.gaps.put(missing, nowNanos);
+                    }
+                }
+                this.lastSeen = id;
+                return true;
+            }
+            return this.gaps.remove(id) != null;
+        }
+
+        void expireGaps(long nowNanos) {
+            this.gaps.values().removeIf(detectedAt -> nowNanos - detectedAt >= this.gapTimeoutNanos);
+        }
+
+        //Los eventos nuevos son los de id mayor a este
+        long lastSeen() {
+            return this.lastSeen;
+        }
+
+        //Los ids que faltan, de menor a mayor
+        List<Long> gapIds() {
+            return new ArrayList<>(this.gaps.keySet());
+        }
+
+        int pendingGaps() {
+            return this.gaps.size();
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class ChangeEvent {
+        private final long id;
+        private final String entityType;
+        private final String entityKey;
+        private final Timestamp createdAt;
+        private final Timestamp readAt;
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.magadiflo.app.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versión de los datos de usuarios y roles, siempre creciente. Es el ETag de los listados
+ * (GET /api/users, GET /api/roles): mientras no cambie, se responde 304 sin ir a la BD.
+ * - Cada escritura (saveUser, saveRole, addRoleToUser...) llama a bump() dentro de su transacción:
+ *   incrementa la fila de la tabla data_version, así todas las instancias comparten la misma numeración.
+ *   La versión en memoria se actualiza recién después del commit, para no anunciar datos que aún no se ven.
+ * - Las escrituras hechas en otras instancias se ven en cuanto ChangeLogPoller lee su evento
+ *   (y como respaldo al sincronizar, cada sync-interval).
+ * El update bloquea la fila hasta el commit, así que las transacciones que escriben usuarios o roles
+ * se confirman de a una: no es un problema con la cantidad de escrituras que tenemos.
+ */
+@Slf4j
+@Component
+public class DataVersion {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AtomicLong version = new AtomicLong();
+
+    public DataVersion(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.sync();
+    }
+
+    public long current() {
+        return this.version.get();
+    }
+
+    public void bump() {
+        this.jdbcTemplate.update("update data_version set version = version + 1 where id = 1");
+        long newVersion = this.read();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    advanceTo(newVersion);
+                }
+            });
+        } else {
+            this.advanceTo(newVersion);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.data-version.sync-interval}",
+            initialDelayString = "${app.data-version.sync-interval}")
+    public void sync() {
+        this.advanceTo(this.read());
+    }
+
+    private long read() {
+        Long current = this.jdbcTemplate.queryForObject("select version from data_version where id = 1", Long.class);
+        return current == null ? 0 : current;
+    }
+
+    private void advanceTo(long newVersion) {
+        long previous = this.version.getAndAccumulate(newVersion, Math::max);
+        if (newVersion > previous) {
+            log.debug("Data version {} -> {}", previous, newVersion);
+        }
+    }
+
+}
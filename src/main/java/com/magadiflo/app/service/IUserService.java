@@ -2,19 +2,35 @@ package com.magadiflo.app.service;
 
 import com.magadiflo.app.domain.Role;
 import com.magadiflo.app.domain.User;
+import com.magadiflo.app.dto.RoleAssignmentRequest;
+import com.magadiflo.app.dto.RoleAssignmentResult;
+import com.magadiflo.app.dto.UserCredentials;
+import com.magadiflo.app.dto.UserSearchPage;
+import com.magadiflo.app.repository.IUserSearchRepository.SearchField;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface IUserService {
 
-    List<User> getUsers();
+    List<User> getUsers(long afterId, int limit);
+
+    void streamUsers(Consumer<User> consumer);
+
+    UserSearchPage searchUsers(SearchField field, String prefix, String roleName, String after, int limit);
 
     User getUser(String username);
 
+    List<Role> getRoles();
+
+    UserCredentials getUserCredentials(String username);
+
     User saveUser(User user);
 
     Role saveRole(Role role);
 
     void addRoleToUser(String username, String roleName);
 
+    RoleAssignmentResult assignRoles(RoleAssignmentRequest request);
+
 }
@@ -0,0 +1,73 @@
+package com.magadiflo.app.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.magadiflo.app.domain.User;
+import com.magadiflo.app.dto.UserPage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Listados de usuarios y roles ya serializados en JSON, por versión de los datos (ver DataVersion).
+ * Los dashboards consultan los mismos listados cada pocos segundos: mientras la versión no cambie,
+ * a los clientes sin ETag se les envían los mismos bytes sin consultar la BD ni volver a serializar.
+ * Las entradas de versiones anteriores ya no se piden y salen de la caché por tamaño (max-size en bytes).
+ * Al llenar una entrada se lee de la primaria (transacción de lectura-escritura) y no de la réplica:
+ * quedará guardada con esta versión, y una réplica atrasada dejaría en caché datos anteriores a ella.
+ */
+@Component
+public class ListingCache {
+
+    private final IUserService userService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, byte[]> cache;
+
+    public ListingCache(IUserService userService, TransactionTemplate transactionTemplate, ObjectMapper objectMapper,
+                        @Value("${app.listing-cache.max-size}") DataSize maxSize,
+                        MeterRegistry meterRegistry) {
+        this.userService = userService;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((String key, byte[] body) -> body.length)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, this.cache, "listings");
+    }
+
+    //Página de usuarios (UserPage) tal como la devuelve GET /api/users
+    public byte[] getUsers(long version, long afterId, int limit) {
+        return this.cache.get("users:" + version + ":" + afterId + ":" + limit, key -> this.load(() -> {
+            List<User> users = this.userService.getUsers(afterId, limit);
+            Long nextCursor = users.size() < limit ? null : users.get(users.size() - 1).getId();
+            return new UserPage(users, nextCursor);
+        }));
+    }
+
+    public byte[] getRoles(long version) {
+        return this.cache.get("roles:" + version, key -> this.load(this.userService::getRoles));
+    }
+
+    private byte[] load(Supplier<Object> query) {
+        return this.transactionTemplate.execute(status -> {
+            try {
+                return this.objectMapper.writeValueAsBytes(query.get());
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+}
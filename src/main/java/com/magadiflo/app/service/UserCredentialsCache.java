@@ -0,0 +1,83 @@
+package com.magadiflo.app.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.magadiflo.app.dto.UserCredentials;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Caché en memoria de los datos de autenticación (usuario, contraseña y roles) por username.
+ * Lo usan el login (loadUserByUsername) y el refresh token, así una ráfaga de logins
+ * no golpea la BD por cada solicitud.
+ * Las entradas se eliminan por tamaño y por tiempo (TTL), y además se invalidan
+ * cada vez que se modifica el usuario o sus roles (en las demás instancias, vía ChangeLogPoller).
+ */
+@Slf4j
+@Component
+public class UserCredentialsCache {
+
+    private final Cache<String, UserCredentials> cache;
+
+    public UserCredentialsCache(@Value("${app.security.user-cache.max-size}") long maxSize,
+                                @Value("${app.security.user-cache.ttl}") Duration ttl,
+                                MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, this.cache, "user_credentials");
+    }
+
+    /**
+     * Si el usuario no está en caché lo carga con el loader.
+     * Si el loader devuelve null (usuario inexistente) no se guarda nada.
+     * La collation de users.username no distingue mayúsculas ni acentos: "ADMIN" encuentra al usuario "admin".
+     * Solo se guarda la entrada del username tal como está en la BD, que es la que se invalida al modificarlo;
+     * la de otra escritura se quita apenas se carga, si no conservaría los datos anteriores hasta el ttl.
+     */
+    public UserCredentials get(String username, Function<String, UserCredentials> loader) {
+        UserCredentials credentials = this.cache.get(username, loader);
+        if (credentials != null && !credentials.getUsername().equals(username)) {
+            this.cache.asMap().remove(username, credentials);
+        }
+        return credentials;
+    }
+
+    /**
+     * Invalida la entrada de inmediato y, si hay una transacción en curso, otra vez cuando
+     * se confirme (commit). La segunda invalidación descarta lo que otro hilo haya podido
+     * volver a cargar desde la BD antes del commit, es decir, los datos antiguos.
+     */
+    public void invalidate(String username) {
+        this.cache.invalidate(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(username);
+                }
+            });
+        }
+        log.debug("User {} invalidated from the credentials cache", username);
+    }
+
+    public CacheStats stats() {
+        return this.cache.stats();
+    }
+
+    public long size() {
+        return this.cache.estimatedSize();
+    }
+
+}
@@ -0,0 +1,258 @@
+package com.magadiflo.app.service;
+
+import com.magadiflo.app.domain.User;
+import com.magadiflo.app.domain.Usernames;
+import com.magadiflo.app.dto.UserImportResult;
+import com.magadiflo.app.repository.IUserRepository;
+import com.magadiflo.app.service.ChangeLog.EntityType;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Importación masiva de usuarios.
+ * Los usuarios se procesan por bloques (chunk): se validan, se calculan los hash BCrypt
+ * en paralelo (un hilo por núcleo) FUERA de la transacción, y luego se insertan en una
+ * transacción corta usando batches JDBC (hibernate.jdbc.batch_size) e ids "pooled".
+ * Así nunca tenemos una conexión a la BD ocupada mientras se calculan los hash.
+ */
+@Slf4j
+@Service
+public class UserImportService {
+
+    private static final String CSV_HEADER = "name,username,password";
+
+    private final IUserRepository userRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final DataVersion dataVersion;
+    private final ChangeLog changeLog;
+    private final int chunkSize;
+    private final int jdbcBatchSize;
+    private final ExecutorService hashingExecutor;
+
+    public UserImportService(IUserRepository userRepository, PasswordEncoder passwordEncoder,
+                             EntityManager entityManager, TransactionTemplate transactionTemplate,
+                             DataVersion dataVersion, ChangeLog changeLog,
+                             @Value("${app.users.import.chunk-size}") int chunkSize,
+                             @Value("${spring.jpa.properties.hibernate.jdbc.batch_size}") int jdbcBatchSize) {
+        this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.dataVersion = dataVersion;
+        this.changeLog = changeLog;
+        this.chunkSize = chunkSize;
+        this.jdbcBatchSize = jdbcBatchSize;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("bulk-hash-");
+        threadFactory.setDaemon(true);
+        //BCrypt es puro CPU, así que no tiene sentido tener más hilos que núcleos
+        this.hashingExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), threadFactory);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.hashingExecutor.shutdown();
+    }
+
+    public List<UserImportResult> importUsers(List<User> users) {
+        List<UserImportResult> results = new ArrayList<>(users.size());
+        for (int from = 0; from < users.size(); from += this.chunkSize) {
+            List<User> chunk = users.subList(from, Math.min(from + this.chunkSize, users.size()));
+            results.addAll(this.importChunk(chunk, from + 1));
+        }
+        log.info("Imported {} users", results.size());
+        return results;
+    }
+
+    /**
+     * Lee el CSV (name,username,password) línea por línea, así nunca tenemos todo el archivo en memoria.
+     * La cabecera es opcional. La contraseña es la última columna, así que puede contener comas.
+     */
+    public List<UserImportResult> importCsv(InputStream inputStream) throws IOException {
+        List<UserImportResult> results = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        List<User> chunk = new ArrayList<>(this.chunkSize);
+        int firstRow = 1;
+        String line;
+        boolean firstLine = true;
+        while ((line = reader.readLine()) != null) {
+            if (firstLine && line.trim().equalsIgnoreCase(CSV_HEADER)) {
+                firstLine = false;
+                continue;
+            }
+            firstLine = false;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            String[] columns = line.split(",", 3);
+            chunk.add(new User(null, columns[0].trim(),
+                    columns.length > 1 ? columns[1].trim() : null,
+                    columns.length > 2 ? columns[2] : null,
+                    new ArrayList<>()));
+            if (chunk.size() == this.chunkSize) {
+                results.addAll(this.importChunk(chunk, firstRow));
+                firstRow += chunk.size();
+                chunk = new ArrayList<>(this.chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            results.addAll(this.importChunk(chunk, firstRow));
+        }
+        log.info("Imported {} users from CSV", results.size());
+        return results;
+    }
+
+    private List<UserImportResult> importChunk(List<User> chunk, int firstRow) {
+        UserImportResult[] results = new UserImportResult[chunk.size()];
+
+        //1° Validamos: campos obligatorios y usernames repetidos dentro del mismo chunk,
+        //comparados como los compara la BD (sin distinguir mayúsculas ni acentos, ver Usernames)
+        Set<String> keys = new HashSet<>();
+        List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            User user = chunk.get(i);
+            if (isBlank(user.getUsername()) || isBlank(user.getPassword())) {
+                results[i] = UserImportResult.rejected(firstRow + i, user.getUsername(), "Username and password are required");
+            } else if (!keys.add(Usernames.key(user.getUsername()))) {
+                results[i] = UserImportResult.rejected(firstRow + i, user.getUsername(), "Duplicated username in the request");
+            } else {
+                usernames.add(user.getUsername());
+            }
+        }
+
+        //2° Una sola consulta para saber cuáles ya existen en la BD. Por la collation el "in" también encuentra
+        //"ADMIN" cuando se pidió "admin", y devuelve el username tal como está guardado
+        Set<String> existing = new HashSet<>();
+        if (!usernames.isEmpty()) {
+            for (String username : this.userRepository.findExistingUsernames(usernames)) {
+                existing.add(Usernames.key(username));
+            }
+        }
+
+        //3° Hash en paralelo de las filas válidas, fuera de cualquier transacción
+        List<Integer> accepted = new ArrayList<>();
+        List<CompletableFuture<String>> hashes = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            User user = chunk.get(i);
+            if (existing.contains(Usernames.key(user.getUsername()))) {
+                results[i] = UserImportResult.rejected(firstRow + i, user.getUsername(), "Username already exists");
+                continue;
+            }
+            String rawPassword = user.getPassword();
+            accepted.add(i);
+            hashes.add(CompletableFuture.supplyAsync(() -> this.passwordEncoder.encode(rawPassword), this.hashingExecutor));
+        }
+        List<User> toInsert = new ArrayList<>(accepted.size());
+        for (int j = 0; j < accepted.size(); j++) {
+            User user = chunk.get(accepted.get(j));
+            user.setId(null);
+            user.setPassword(hashes.get(j).join());
+            toInsert.add(user);
+        }
+
+        //4° Inserción en una transacción corta, por batches JDBC
+        try {
+            this.transactionTemplate.executeWithoutResult(status -> this.insert(toInsert));
+            for (int j = 0; j < accepted.size(); j++) {
+                User user = toInsert.get(j);
+                results[accepted.get(j)] = UserImportResult.created(firstRow + accepted.get(j), user.getUsername(), user.getId());
+            }
+        } catch (RuntimeException e) {
+            if (isConstraintViolation(e)) {
+                //Otra solicitud creó alguno de estos usernames después de la consulta del 2°: el rollback
+                //deshizo todo el chunk, así que se reintenta fila por fila y solo fallan las que chocan
+                log.warn("Constraint violation importing users from row {}, retrying row by row: {}", firstRow, e.getMessage());
+                for (int j = 0; j < accepted.size(); j++) {
+                    results[accepted.get(j)] = this.insertOne(toInsert.get(j), firstRow + accepted.get(j));
+                }
+            } else {
+                log.error("Error importing users from row {}: {}", firstRow, e.getMessage());
+                for (int j = 0; j < accepted.size(); j++) {
+                    User user = toInsert.get(j);
+                    results[accepted.get(j)] = UserImportResult.failed(firstRow + accepted.get(j), user.getUsername(), e.getMessage());
+                }
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private UserImportResult insertOne(User user, int row) {
+        //El id asignado en el intento anterior quedó en la entidad, pero ese insert se deshizo
+        user.setId(null);
+        try {
+            this.transactionTemplate.executeWithoutResult(status -> this.insert(Collections.singletonList(user)));
+            return UserImportResult.created(row, user.getUsername(), user.getId());
+        } catch (RuntimeException e) {
+            if (isConstraintViolation(e)) {
+                return UserImportResult.rejected(row, user.getUsername(), "Username already exists");
+            }
+            log.error("Error importing user at row {}: {}", row, e.getMessage());
+            return UserImportResult.failed(row, user.getUsername(), e.getMessage());
+        }
+    }
+
+    /**
+     * Cada batch_size usuarios se envían los inserts y se limpia el contexto de persistencia.
+     * Los eventos de change_log van en la misma transacción, así las demás instancias
+     * invalidan sus listados (ver ChangeLogPoller) solo si la importación se confirma.
+     */
+    private void insert(List<User> users) {
+        for (int i = 0; i < users.size(); i++) {
+            this.entityManager.persist(users.get(i));
+            if ((i + 1) % this.jdbcBatchSize == 0) {
+                this.entityManager.flush();
+                this.entityManager.clear();
+            }
+        }
+        this.entityManager.flush();
+        this.entityManager.clear();
+        if (!users.isEmpty()) {
+            this.dataVersion.bump();
+            this.changeLog.appendAll(EntityType.USER, users.stream().map(User::getUsername).collect(Collectors.toList()));
+        }
+    }
+
+    //Hibernate convierte así el error de la BD (SQLState 23xxx, p. ej. uk_users_username), y Spring en DataIntegrityViolationException
+    private static boolean isConstraintViolation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException || cause instanceof DataIntegrityViolationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+}
@@ -2,21 +2,54 @@ package com.magadiflo.app.service;
 
 import com.magadiflo.app.domain.Role;
 import com.magadiflo.app.domain.User;
+import com.magadiflo.app.dto.RoleAssignment;
+import com.magadiflo.app.dto.RoleAssignmentRequest;
+import com.magadiflo.app.dto.RoleAssignmentResult;
+import com.magadiflo.app.dto.UserCredentials;
+import com.magadiflo.app.dto.UserCredentialsRow;
+import com.magadiflo.app.dto.UserSearchPage;
 import com.magadiflo.app.repository.IRolRepository;
 import com.magadiflo.app.repository.IUserRepository;
+import com.magadiflo.app.repository.IUserSearchRepository.SearchCursor;
+import com.magadiflo.app.repository.IUserSearchRepository.SearchField;
+import com.magadiflo.app.security.RoleRegistry;
+import com.magadiflo.app.service.ChangeLog.EntityType;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.Hibernate;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.persistence.EntityManager;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * @RequiredArgsConstructor, Lombok creará un constructor cuyos argumentos serán
@@ -28,7 +61,10 @@ import java.util.stream.Collectors;
 @Transactional
 @RequiredArgsConstructor
 @Service
-public class UserServiceImpl implements IUserService, UserDetailsService {
+public class UserServiceImpl implements IUserService, UserDetailsService, UserDetailsPasswordService {
+
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+    private static final String USER_ROLES_COLLECTION = User.class.getName() + ".roles";
 
     private final IUserRepository userRepository;
 
@@ -36,48 +72,212 @@ public class UserServiceImpl implements IUserService, UserDetailsService {
 
     private final PasswordEncoder passwordEncoder;
 
-    //Método que usa Spring para cargar los usuarios desde la BD o desde donde sea que estén
+    private final EntityManager entityManager;
+
+    private final UserCredentialsCache credentialsCache;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final RoleRegistry roleRegistry;
+
+    //Cada método que modifica usuarios o roles llama a dataVersion.bump() (ETag de los listados)
+    private final DataVersion dataVersion;
+
+    //Y agrega el evento para que las demás instancias invaliden sus cachés (ver ChangeLogPoller)
+    private final ChangeLog changeLog;
+
+    //Método que usa Spring para cargar los usuarios desde la BD o desde donde sea que estén.
+    //SUPPORTS: cuando el usuario está en caché no abrimos una transacción (ni pedimos una conexión) para nada
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = this.userRepository.findByUsername(username);
-        if(user == null){
+        UserCredentials credentials = this.getUserCredentials(username);
+        if(credentials == null){
             log.error("User {} not found in the database", username);
             throw new UsernameNotFoundException("User not found in the database");
         } else {
-            log.info("User {} found in the database", username);
+            log.debug("User {} found in the database", username);
         }
 
-        Collection<SimpleGrantedAuthority> authorities = user.getRoles().stream()
-                .map(role -> new SimpleGrantedAuthority(role.getName())).collect(Collectors.toList());
+        Collection<SimpleGrantedAuthority> authorities = credentials.getRoles().stream()
+                .map(SimpleGrantedAuthority::new).collect(Collectors.toList());
 
         //ingresamos el nombre calificado completo para poder diferenciarnos
         //del nuestra propia clase User usada en este servicio
-        return new org.springframework.security.core.userdetails.User(user.getUsername(), user.getPassword(), authorities);
+        return new org.springframework.security.core.userdetails.User(credentials.getUsername(), credentials.getPassword(), authorities);
+    }
+
+    /**
+     * Spring Security lo llama (en segundo plano, ver PasswordUpgradingAuthenticationProvider) cuando
+     * el usuario inició sesión con un hash desactualizado. newPassword ya viene como hash.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        log.info("Updating password hash of user {}", user.getUsername());
+        this.userRepository.updatePassword(user.getUsername(), newPassword);
+        this.credentialsCache.invalidate(user.getUsername());
+        this.dataVersion.bump();
+        this.changeLog.append(EntityType.USER, user.getUsername());
+        return org.springframework.security.core.userdetails.User.withUserDetails(user).password(newPassword).build();
+    }
+
+    /**
+     * Primero busca en la caché, solo si no está ahí consulta la BD.
+     * saveUser y addRoleToUser invalidan la entrada, así los cambios de roles se ven de inmediato.
+     */
+    //Se lee siempre de la primaria: lo leído queda en la caché hasta el ttl, y una réplica atrasada
+    //dejaría ahí los roles o la contraseña de antes de un cambio recién confirmado
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public UserCredentials getUserCredentials(String username) {
+        return this.credentialsCache.get(username, this::findUserCredentials);
     }
 
+    /**
+     * Obtiene usuario, contraseña y nombres de roles en una sola consulta (una fila por rol),
+     * sin cargar las entidades User ni Role.
+     */
+    private UserCredentials findUserCredentials(String username) {
+        log.debug("Fetching credentials of user {} from the database", username);
+        List<UserCredentialsRow> rows = this.userRepository.findCredentialsByUsername(username);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        List<String> roles = new ArrayList<>(rows.size());
+        for (UserCredentialsRow row : rows) {
+            if (row.getRoleName() != null) { //left join: un usuario sin roles devuelve una fila con roleName null
+                roles.add(row.getRoleName());
+            }
+        }
+        UserCredentialsRow first = rows.get(0);
+        return new UserCredentials(first.getUsername(), first.getPassword(), Collections.unmodifiableList(roles));
+    }
+
+    //Dos consultas por página sin importar su tamaño: los ids de la página y luego los usuarios con sus roles.
+    //readOnly: va a la réplica (ver ReadWriteRoutingDataSource) y Hibernate no guarda copias de las entidades
+    //para el dirty checking ni hace flush al terminar
+    @Override
+    @Transactional(readOnly = true)
+    public List<User> getUsers(long afterId, int limit) {
+        log.debug("Fetching {} users after id {}", limit, afterId);
+        List<Long> ids = this.userRepository.findPageIds(afterId, PageRequest.of(0, limit));
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return this.userRepository.findAllWithRolesByIdIn(ids);
+    }
+
+    /**
+     * Igual que getUsers, dos consultas por página: los ids por el índice del campo buscado
+     * (ver IUserSearchRepository) y luego los usuarios con sus roles.
+     * Un rol inexistente o un cursor inválido no son un error del servidor: el primero devuelve
+     * una página vacía y el segundo una IllegalArgumentException (400 en UserResource).
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public UserSearchPage searchUsers(SearchField field, String prefix, String roleName, String after, int limit) {
+        log.debug("Searching {} users by {} starting with '{}'", limit, field, prefix);
+        Role role = null;
+        if (roleName != null) {
+            role = this.rolRepository.findByName(roleName);
+            if (role == null) {
+                return new UserSearchPage(Collections.emptyList(), null);
+            }
+        }
+        List<Long> ids = this.userRepository.searchIds(field, prefix, role, decodeCursor(after), limit);
+        if (ids.isEmpty()) {
+            return new UserSearchPage(Collections.emptyList(), null);
+        }
+        //findAllWithRolesByIdIn los devuelve ordenados por id: se recupera el orden de la búsqueda
+        Map<Long, User> usersById = new HashMap<>();
+        for (User user : this.userRepository.findAllWithRolesByIdIn(ids)) {
+            usersById.put(user.getId(), user);
+        }
+        List<User> users = ids.stream().map(usersById::get).collect(Collectors.toList());
+        User last = users.get(users.size() - 1);
+        String nextCursor = users.size() < limit
+                ? null
+                : encodeCursor(field == SearchField.USERNAME ? last.getUsername() : last.getName(), last.getId());
+        return new UserSearchPage(users, nextCursor);
+    }
+
+    //El cursor viaja como Base64 de "<id>:<valor>", el valor puede contener cualquier carácter
+    private static String encodeCursor(String value, long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((id + ":" + value).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static SearchCursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int separator = decoded.indexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return new SearchCursor(decoded.substring(separator + 1), Long.parseLong(decoded.substring(0, separator)));
+    }
+
+    /**
+     * Recorre todos los usuarios fila por fila. Cada usuario se separa (detach) del contexto
+     * de persistencia después de entregarlo al consumer, así la memoria se mantiene constante
+     * sin importar cuántos usuarios tenga la tabla.
+     */
     @Override
-    public List<User> getUsers() {
-        log.info("Fetching all users");
-        return this.userRepository.findAll();
+    @Transactional(readOnly = true)
+    public void streamUsers(Consumer<User> consumer) {
+        log.info("Streaming all users");
+        try (Stream<User> users = this.userRepository.streamAll()) {
+            users.forEach(user -> {
+                consumer.accept(user);
+                this.entityManager.detach(user);
+            });
+        }
     }
 
+    //Natural id: usuario y roles salen de la caché de segundo nivel cuando ya están ahí
     @Override
+    @Transactional(readOnly = true)
     public User getUser(String username) {
-        log.info("Fetching user {}", username);
-        return this.userRepository.findByUsername(username);
+        log.debug("Fetching user {}", username);
+        User user = this.userRepository.findBySimpleNaturalId(username);
+        if (user != null) {
+            Hibernate.initialize(user.getRoles());
+        }
+        return user;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Role> getRoles() {
+        log.debug("Fetching all roles");
+        return this.rolRepository.findAll(Sort.by("id"));
     }
 
     @Override
     public User saveUser(User user) {
         log.info("Saving new user {} to the database", user.getName());
         user.setPassword(passwordEncoder.encode(user.getPassword()));
-        return this.userRepository.save(user);
+        User savedUser = this.userRepository.save(user);
+        this.credentialsCache.invalidate(savedUser.getUsername());
+        this.dataVersion.bump();
+        this.changeLog.append(EntityType.USER, savedUser.getUsername());
+        return savedUser;
     }
 
     @Override
     public Role saveRole(Role role) {
         log.info("Saving new role {} to the database", role.getName());
-        return this.rolRepository.save(role);
+        //Cada rol nuevo toma la siguiente posición libre en la máscara de bits de los tokens
+        if (role.getBitIndex() == null) {
+            Integer maxBitIndex = this.rolRepository.findMaxBitIndex();
+            role.setBitIndex(maxBitIndex == null ? 0 : maxBitIndex + 1);
+        }
+        Role savedRole = this.rolRepository.save(role);
+        this.roleRegistry.reloadAfterCommit();
+        this.dataVersion.bump();
+        this.changeLog.append(EntityType.ROLE, savedRole.getName());
+        return savedRole;
     }
 
     /**
@@ -89,10 +289,149 @@ public class UserServiceImpl implements IUserService, UserDetailsService {
     @Override
     public void addRoleToUser(String username, String roleName) {
         log.info("Adding role {} to user {}", roleName, username);
-        User user = this.userRepository.findByUsername(username);
+        User user = this.userRepository.findBySimpleNaturalId(username);
         Role role = this.rolRepository.findByName(roleName);
 
         user.getRoles().add(role);
+        //El username de la BD y no el de la solicitud, que puede venir escrito con otras mayúsculas
+        this.credentialsCache.invalidate(user.getUsername());
+        this.dataVersion.bump();
+        this.changeLog.append(EntityType.USER, user.getUsername());
+    }
+
+    /**
+     * Asignación y remoción masiva de roles. En lugar de hacer findByUsername + findByName +
+     * un insert por cada par (usuario, rol) como addRoleToUser:
+     * 1° Se resuelven todos los usuarios y roles con consultas IN (una por cada bloque de 1000)
+     * 2° Se leen las asignaciones que ya existen para esos usuarios
+     * 3° Se escriben solo las filas que cambian: un batch JDBC de inserts y otro de deletes
+     * Todo dentro de la misma transacción.
+     */
+    @Override
+    public RoleAssignmentResult assignRoles(RoleAssignmentRequest request) {
+        List<RoleAssignment> grants = request.getGrants() == null ? Collections.emptyList() : request.getGrants();
+        List<RoleAssignment> revokes = request.getRevokes() == null ? Collections.emptyList() : request.getRevokes();
+        log.info("Assigning {} roles and revoking {} roles", grants.size(), revokes.size());
+
+        Set<String> usernames = new HashSet<>();
+        Set<String> roleNames = new HashSet<>();
+        for (RoleAssignment assignment : concat(grants, revokes)) {
+            usernames.add(assignment.getUsername());
+            roleNames.add(assignment.getRoleName());
+        }
+
+        Map<String, Long> userIds = new HashMap<>();
+        for (List<String> chunk : partition(new ArrayList<>(usernames))) {
+            this.userRepository.findIdsByUsernameIn(chunk).forEach(row -> userIds.put(row.getUsername(), row.getId()));
+        }
+        Map<String, Long> roleIds = new HashMap<>();
+        if (!roleNames.isEmpty()) {
+            this.rolRepository.findByNameIn(roleNames).forEach(role -> roleIds.put(role.getName(), role.getId()));
+        }
+
+        Set<List<Long>> existing = new HashSet<>();
+        for (List<Long> chunk : partition(new ArrayList<>(userIds.values()))) {
+            this.jdbcTemplate.query("select user_id, roles_id from users_roles where user_id in (:ids)",
+                    Collections.singletonMap("ids", chunk),
+                    (RowCallbackHandler) rs -> existing.add(Arrays.asList(rs.getLong(1), rs.getLong(2))));
+        }
+
+        List<String> errors = new ArrayList<>();
+        Set<String> changedUsers = new HashSet<>();
+        Set<List<Long>> toInsert = new LinkedHashSet<>();
+        for (RoleAssignment grant : grants) {
+            List<Long> pair = this.resolve(grant, userIds, roleIds, errors);
+            if (pair != null && !existing.contains(pair) && toInsert.add(pair)) {
+                changedUsers.add(grant.getUsername());
+            }
+        }
+        Set<List<Long>> toDelete = new LinkedHashSet<>();
+        for (RoleAssignment revoke : revokes) {
+            List<Long> pair = this.resolve(revoke, userIds, roleIds, errors);
+            if (pair == null || toInsert.remove(pair)) { //Si se asignó y se quitó en la misma solicitud, no hay nada que escribir
+                continue;
+            }
+            if (existing.contains(pair) && toDelete.add(pair)) {
+                changedUsers.add(revoke.getUsername());
+            }
+        }
+
+        //Cualquier cambio pendiente en el contexto de persistencia debe llegar a la BD antes que el JDBC directo
+        this.entityManager.flush();
+        if (!toInsert.isEmpty()) {
+            this.jdbcTemplate.getJdbcTemplate().batchUpdate("insert into users_roles (user_id, roles_id) values (?, ?)",
+                    toBatchArgs(toInsert));
+        }
+        if (!toDelete.isEmpty()) {
+            this.jdbcTemplate.getJdbcTemplate().batchUpdate("delete from users_roles where user_id = ? and roles_id = ?",
+                    toBatchArgs(toDelete));
+        }
+        changedUsers.forEach(this.credentialsCache::invalidate);
+        this.evictRolesFromSecondLevelCache(changedUsers.stream().map(userIds::get).collect(Collectors.toList()));
+        if (!changedUsers.isEmpty()) {
+            this.dataVersion.bump();
+            this.changeLog.appendAll(EntityType.USER, changedUsers);
+        }
+
+        return new RoleAssignmentResult(toInsert.size(), toDelete.size(), errors);
+    }
+
+    /**
+     * Las filas de users_roles escritas con JDBC no pasan por Hibernate, así que la colección User.roles
+     * de la caché de segundo nivel quedaría desactualizada. Se elimina ahora y otra vez después del commit
+     * (por si otra transacción la volvió a cargar con los datos anteriores).
+     */
+    private void evictRolesFromSecondLevelCache(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        Cache cache = this.entityManager.getEntityManagerFactory().getCache().unwrap(Cache.class);
+        userIds.forEach(userId -> cache.evictCollectionData(USER_ROLES_COLLECTION, userId));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    userIds.forEach(userId -> cache.evictCollectionData(USER_ROLES_COLLECTION, userId));
+                }
+            });
+        }
+    }
+
+    private List<Long> resolve(RoleAssignment assignment, Map<String, Long> userIds, Map<String, Long> roleIds,
+                               List<String> errors) {
+        Long userId = userIds.get(assignment.getUsername());
+        Long roleId = roleIds.get(assignment.getRoleName());
+        if (userId == null) {
+            errors.add("User " + assignment.getUsername() + " not found");
+            return null;
+        }
+        if (roleId == null) {
+            errors.add("Role " + assignment.getRoleName() + " not found");
+            return null;
+        }
+        return Arrays.asList(userId, roleId);
+    }
+
+    private static List<RoleAssignment> concat(List<RoleAssignment> first, List<RoleAssignment> second) {
+        List<RoleAssignment> all = new ArrayList<>(first.size() + second.size());
+        all.addAll(first);
+        all.addAll(second);
+        return all;
+    }
+
+    private static List<Object[]> toBatchArgs(Set<List<Long>> pairs) {
+        List<Object[]> batchArgs = new ArrayList<>(pairs.size());
+        pairs.forEach(pair -> batchArgs.add(pair.toArray()));
+        return batchArgs;
+    }
+
+    //Divide la lista en bloques de 1000 para no generar cláusulas IN gigantes
+    private static <T> List<List<T>> partition(List<T> list) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < list.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            chunks.add(list.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, list.size())));
+        }
+        return chunks;
     }
 
 }
@@ -0,0 +1,113 @@
+package com.magadiflo.app.startup;
+
+import com.magadiflo.app.domain.Role;
+import com.magadiflo.app.domain.User;
+import com.magadiflo.app.dto.RoleAssignment;
+import com.magadiflo.app.dto.RoleAssignmentRequest;
+import com.magadiflo.app.repository.IRolRepository;
+import com.magadiflo.app.repository.IUserRepository;
+import com.magadiflo.app.security.RoleRegistry;
+import com.magadiflo.app.service.DataVersion;
+import com.magadiflo.app.service.IUserService;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Datos iniciales (roles, usuarios y sus roles), solo con el perfil seed (el perfil por defecto).
+ * Antes se hacían ~18 llamadas al servicio, cada una con su transacción y su BCrypt. Ahora:
+ * - todo va en una sola transacción, con consultas IN y los inserts en batch
+ * - las contraseñas ya vienen como hash, no se calcula ningún BCrypt al arrancar
+ * - solo se crea lo que falta, así se puede ejecutar en cada arranque (la BD ya no se recrea, ver Flyway)
+ */
+@Slf4j
+@Profile("seed")
+@Component
+@RequiredArgsConstructor
+public class SeedDataRunner implements CommandLineRunner {
+
+    //ROLE_GATEWAY: cuenta de servicio del gateway, puede usar /api/token/introspect
+    private static final List<String> ROLES = Arrays.asList("ROLE_USER", "ROLE_MANAGER", "ROLE_ADMIN", "ROLE_SUPER_ADMIN",
+            "ROLE_GATEWAY");
+
+    //Contraseña 12345 de todos los usuarios, hash BCrypt con cost 10 (el de app.security.password.bcrypt-strength)
+    private static final List<SeedUser> USERS = Arrays.asList(
+            new SeedUser("Tinkler", "tinkler", "{bcrypt}$2a$10$lZuYIocsE2qbamVYAAXXaelTMA8eyehCtiPPQ6p89LWEjimyYS/eC"),
+            new SeedUser("Raúl", "raul", "{bcrypt}$2a$10$YLrOn/fDuBzk3Dj9Kg6LT.ERQFKUcIP/h7HpeIrleqFkOoqdCfWFW"),
+            new SeedUser("Abraham", "abraham", "{bcrypt}$2a$10$MnwPh3S.Ylc0U8w39qfyYeM6YYVBUBf/t0wpHj9SQn1VF6Vk0AT5m"),
+            new SeedUser("Alicia", "alicia", "{bcrypt}$2a$10$EWLvOuatIX7raNzWszu3ieMOuuVPdMFYQhVLx5uklGukIOxJ8uUm."),
+            new SeedUser("Gabriel", "gabriel", "{bcrypt}$2a$10$59PtRtfu8qo.QbgBVxhBn.R2XW1lZSPgdmMcuQVFlPBAKYaeVSGbC"),
+            new SeedUser("Martín", "magadiflo", "{bcrypt}$2a$10$ZdRplsdfv0jhyCFSie8ZSehYzAxXlVaXL0oYe6RHFfBg4IMrN0z7C"));
+
+    private static final List<RoleAssignment> ROLE_ASSIGNMENTS = Arrays.asList(
+            new RoleAssignment("tinkler", "ROLE_USER"),
+            new RoleAssignment("raul", "ROLE_USER"),
+            new RoleAssignment("abraham", "ROLE_MANAGER"),
+            new RoleAssignment("alicia", "ROLE_ADMIN"),
+            new RoleAssignment("gabriel", "ROLE_ADMIN"),
+            new RoleAssignment("magadiflo", "ROLE_USER"),
+            new RoleAssignment("magadiflo", "ROLE_ADMIN"),
+            new RoleAssignment("magadiflo", "ROLE_SUPER_ADMIN"));
+
+    private final IRolRepository rolRepository;
+    private final IUserRepository userRepository;
+    private final IUserService userService;
+    private final RoleRegistry roleRegistry;
+    private final DataVersion dataVersion;
+
+    @Override
+    @Transactional
+    public void run(String... args) {
+        Set<String> existingRoles = this.rolRepository.findByNameIn(ROLES).stream()
+                .map(Role::getName).collect(Collectors.toSet());
+        //Cada rol nuevo toma la siguiente posición libre en la máscara de bits de los tokens (igual que saveRole)
+        Integer maxBitIndex = this.rolRepository.findMaxBitIndex();
+        int nextBitIndex = maxBitIndex == null ? 0 : maxBitIndex + 1;
+        List<Role> roles = new ArrayList<>();
+        for (String roleName : ROLES) {
+            if (!existingRoles.contains(roleName)) {
+                roles.add(new Role(null, roleName, nextBitIndex++));
+            }
+        }
+        if (!roles.isEmpty()) {
+            this.rolRepository.saveAll(roles);
+            this.roleRegistry.reloadAfterCommit();
+        }
+
+        Set<String> existingUsers = new HashSet<>(this.userRepository.findExistingUsernames(
+                USERS.stream().map(SeedUser::getUsername).collect(Collectors.toList())));
+        List<User> users = USERS.stream()
+                .filter(seedUser -> !existingUsers.contains(seedUser.getUsername()))
+                .map(seedUser -> new User(null, seedUser.getName(), seedUser.getUsername(),
+                        seedUser.getPasswordHash(), new ArrayList<>()))
+                .collect(Collectors.toList());
+        this.userRepository.saveAll(users);
+        if (!roles.isEmpty() || !users.isEmpty()) {
+            this.dataVersion.bump();
+        }
+
+        //Solo inserta las asignaciones que todavía no existen
+        this.userService.assignRoles(new RoleAssignmentRequest(ROLE_ASSIGNMENTS, new ArrayList<>()));
+        log.info("Seed data loaded: {} roles and {} users created", roles.size(), users.size());
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class SeedUser {
+        private final String name;
+        private final String username;
+        private final String passwordHash;
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.magadiflo.app.startup;
+
+import com.magadiflo.app.security.JwtKeyManager;
+import com.magadiflo.app.security.RevocationStore;
+import com.magadiflo.app.security.RoleRegistry;
+import com.magadiflo.app.service.ChangeLogPoller;
+import com.magadiflo.app.service.DataVersion;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Arranque de la aplicación:
+ * - Con el perfil fast los beans se crean recién cuando se usan (spring.main.lazy-initialization),
+ *   salvo los que tienen tareas @Scheduled: si nadie los pidiera nunca se crearían y las claves
+ *   no rotarían ni se sincronizarían las revocaciones.
+ * - La línea de tiempo del arranque (ApplicationStartup, ver la clase principal) se publica en
+ *   /actuator/startup, y al terminar se registran en el log los pasos más lentos.
+ */
+@Slf4j
+@Configuration
+public class StartupConfig {
+
+    private static final int SLOWEST_STEPS = 10;
+
+    //static: Spring Boot lo busca antes de crear los demás beans
+    @Bean
+    public static LazyInitializationExcludeFilter scheduledBeansLazyInitializationExcludeFilter() {
+        return LazyInitializationExcludeFilter.forBeanTypes(JwtKeyManager.class, RevocationStore.class, RoleRegistry.class,
+                DataVersion.class, ChangeLogPoller.class);
+    }
+
+    @EventListener
+    public void logSlowestStartupSteps(ApplicationReadyEvent event) {
+        ApplicationStartup applicationStartup = event.getApplicationContext().getApplicationStartup();
+        if (!(applicationStartup instanceof BufferingApplicationStartup)) {
+            return;
+        }
+        //getBufferedTimeline no vacía el buffer: /actuator/startup sigue teniendo la línea de tiempo completa
+        StartupTimeline timeline = ((BufferingApplicationStartup) applicationStartup).getBufferedTimeline();
+        List<StartupTimeline.TimelineEvent> slowest = timeline.getEvents().stream()
+                .sorted(Comparator.comparing(StartupTimeline.TimelineEvent::getDuration).reversed())
+                .limit(SLOWEST_STEPS)
+                .collect(Collectors.toList());
+        log.info("Application ready in {} ms, slowest startup steps:",
+                event.getTimeTaken() == null ? "?" : event.getTimeTaken().toMillis());
+        for (StartupTimeline.TimelineEvent step : slowest) {
+            log.info("  {} ms {} {}", step.getDuration().toMillis(), step.getStartupStep().getName(), tags(step.getStartupStep()));
+        }
+    }
+
+    //Por ejemplo beanName=jwtKeyManager
+    private static String tags(StartupStep step) {
+        StringBuilder tags = new StringBuilder();
+        for (StartupStep.Tag tag : step.getTags()) {
+            tags.append(tags.length() == 0 ? "" : ", ").append(tag.getKey()).append('=').append(tag.getValue());
+        }
+        return tags.toString();
+    }
+
+}
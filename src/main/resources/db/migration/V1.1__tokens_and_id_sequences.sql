@@ -0,0 +1,48 @@
+-- Lo que se agregó al esquema antes de usar Flyway (con ddl-auto=create no quedaba registrado):
+-- secuencias por tabla, índice de bit de los roles, username único, claves de firma y tokens revocados.
+-- Se ejecuta también sobre las BD marcadas en la versión 1, así que conserva sus datos.
+
+-- Secuencias roles_seq y users_seq emuladas con una tabla (MySQL no tiene secuencias), ver Role y User.
+-- Con el optimizador pooled (allocationSize = 50) el valor leído es el último id del bloque:
+-- se deja 50 por encima del id más alto para no repetir ids existentes. En una BD vacía queda en 1.
+-- hibernate_sequence ya no se usa.
+create table roles_seq (
+    next_val bigint
+) engine = InnoDB;
+insert into roles_seq select coalesce(max(id) + 51, 1) from roles;
+
+create table users_seq (
+    next_val bigint
+) engine = InnoDB;
+insert into users_seq select coalesce(max(id) + 51, 1) from users;
+
+-- Posición del rol en la máscara de bits del access token (ver RoleRegistry).
+-- Los roles que ya existían reciben 0, 1, 2... en el orden de su id
+alter table roles
+    add column bit_index integer,
+    add constraint uk_roles_bit_index unique (bit_index);
+
+update roles r
+    join (select id, row_number() over (order by id) - 1 as bit_index from roles) numbered on numbered.id = r.id
+set r.bit_index = numbered.bit_index;
+
+-- username es el natural id de User
+alter table users add constraint uk_users_username unique (username);
+
+create table signing_keys (
+    kid         varchar(64) not null,
+    public_key  longtext    not null,
+    private_key longtext    not null,
+    created_at  datetime(6) not null,
+    primary key (kid)
+) engine = InnoDB;
+
+create table revoked_tokens (
+    jti        varchar(64) not null,
+    expires_at datetime(6) not null,
+    revoked_at datetime(6) not null,
+    primary key (jti)
+) engine = InnoDB;
+
+create index idx_revoked_tokens_revoked_at on revoked_tokens (revoked_at);
+create index idx_revoked_tokens_expires_at on revoked_tokens (expires_at);
@@ -0,0 +1,34 @@
+-- Esquema inicial: exactamente el que generaba Hibernate con ddl-auto=create (MySQL 8) antes de Flyway,
+-- con los mismos nombres de las claves foráneas. Las BD que ya existían se marcan en esta versión sin
+-- ejecutarla (spring.flyway.baseline-on-migrate) y reciben lo agregado después desde V1.1.
+
+create table hibernate_sequence (
+    next_val bigint
+) engine = InnoDB;
+
+insert into hibernate_sequence values (1);
+
+create table roles (
+    id   bigint not null,
+    name varchar(255),
+    primary key (id)
+) engine = InnoDB;
+
+create table users (
+    id       bigint not null,
+    name     varchar(255),
+    password varchar(255),
+    username varchar(255),
+    primary key (id)
+) engine = InnoDB;
+
+create table users_roles (
+    user_id  bigint not null,
+    roles_id bigint not null
+) engine = InnoDB;
+
+alter table users_roles
+    add constraint FKa62j07k5mhgifpp955h37ponj foreign key (roles_id) references roles (id);
+
+alter table users_roles
+    add constraint FK2o0jvgh89lemvvo17cbqvdxaa foreign key (user_id) references users (id);
@@ -0,0 +1,9 @@
+-- Versión de los datos de usuarios y roles (ver DataVersion). Una sola fila que se incrementa
+-- en cada transacción que los modifica.
+create table data_version (
+    id      integer not null,
+    version bigint  not null,
+    primary key (id)
+) engine = InnoDB;
+
+insert into data_version (id, version) values (1, 0);
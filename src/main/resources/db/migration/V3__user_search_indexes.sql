@@ -0,0 +1,17 @@
+-- Búsqueda de usuarios por prefijo (GET /api/users/search) y búsqueda de roles por nombre.
+
+-- Collation que no distingue mayúsculas (la de MySQL 8 por defecto, aquí explícita): "username like 'mag%'"
+-- encuentra a "Magadiflo" usando el índice, sin lower() (que obligaría a recorrer toda la tabla).
+-- uk_users_username tampoco admite usernames que solo difieran en mayúsculas.
+alter table users
+    modify username varchar(255) collate utf8mb4_0900_ai_ci,
+    modify name varchar(255) collate utf8mb4_0900_ai_ci;
+
+create index idx_users_name on users (name);
+
+-- IRolRepository.findByName
+alter table roles add constraint uk_roles_name unique (name);
+
+-- Filtro por rol de la búsqueda: se resuelve solo con el índice, por cada usuario candidato.
+-- También sirve a la clave foránea de user_id
+create index idx_users_roles_user_role on users_roles (user_id, roles_id);
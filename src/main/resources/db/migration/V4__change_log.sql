@@ -0,0 +1,12 @@
+-- Registro de cambios de usuarios, roles y tokens revocados (ver ChangeLog y ChangeLogPoller).
+-- Cada escritura agrega sus eventos en su misma transacción y todas las instancias leen la tabla
+-- por id creciente para invalidar sus cachés en memoria. created_at lo pone la BD, así la latencia
+-- de propagación se mide con un solo reloj.
+create table change_log (
+    id          bigint       not null auto_increment,
+    entity_type varchar(16)  not null,
+    entity_key  varchar(255) not null,
+    created_at  datetime(6)  not null default current_timestamp(6),
+    primary key (id),
+    key idx_change_log_created_at (created_at)
+) engine = InnoDB;
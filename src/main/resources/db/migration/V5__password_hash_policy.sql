@@ -0,0 +1,10 @@
+-- Cost de BCrypt elegido con /actuator/passwordhashing (ver PasswordHashPolicyStore), compartido por todas
+-- las instancias. Una sola fila: strength es null mientras nadie lo cambió, y entonces cada instancia usa
+-- app.security.password.bcrypt-strength.
+create table password_hash_policy (
+    id       integer not null,
+    strength integer,
+    primary key (id)
+) engine = InnoDB;
+
+insert into password_hash_policy (id, strength) values (1, null);
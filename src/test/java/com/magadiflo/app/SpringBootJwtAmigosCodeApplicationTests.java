@@ -1,13 +1,37 @@
 package com.magadiflo.app;
 
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
 
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Arranca la aplicación completa sobre H2 (perfil h2, con los datos iniciales de seed):
+ * si una entidad, una región de caché o un bean no se puede crear, falla aquí.
+ */
 @SpringBootTest
+@ActiveProfiles({"h2", "seed"})
 class SpringBootJwtAmigosCodeApplicationTests {
 
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
 	@Test
 	void contextLoads() {
 	}
 
+	//Con missing_cache_strategy=fail cada región debe estar en application.conf
+	@Test
+	void secondLevelCacheRegionsAreConfigured() {
+		SessionFactoryImplementor sessionFactory = this.entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+		for (String region : new String[]{"roles", "users", "users-natural-id", "user-roles"}) {
+			assertNotNull(sessionFactory.getCache().getRegion(region), region);
+		}
+	}
+
 }
@@ -0,0 +1,170 @@
+package com.magadiflo.app.repository;
+
+import com.magadiflo.app.domain.Role;
+import com.magadiflo.app.domain.User;
+import com.magadiflo.app.dto.UserCredentialsRow;
+import com.magadiflo.app.repository.IUserSearchRepository.SearchCursor;
+import com.magadiflo.app.repository.IUserSearchRepository.SearchField;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cuenta las sentencias SQL de cada lectura para que el problema N+1
+ * no vuelva a aparecer sin que nos demos cuenta.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        //Las migraciones son para MySQL; en H2 el esquema lo crea Hibernate
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class IUserRepositoryTest {
+
+    private static final int USERS = 10;
+
+    @Autowired
+    private IUserRepository userRepository;
+
+    @Autowired
+    private IRolRepository rolRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        Role roleUser = this.rolRepository.save(new Role(null, "ROLE_USER"));
+        Role roleAdmin = this.rolRepository.save(new Role(null, "ROLE_ADMIN"));
+        for (int i = 0; i < USERS; i++) {
+            this.userRepository.save(new User(null, "Name " + i, "user" + i, "12345",
+                    new ArrayList<>(Arrays.asList(roleUser, roleAdmin))));
+        }
+        this.entityManager.flush();
+        this.entityManager.clear();
+
+        this.statistics = this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        this.statistics.clear();
+    }
+
+    @Test
+    void findByUsernameLoadsRolesInOneQuery() {
+        User user = this.userRepository.findByUsername("user3");
+
+        assertEquals(2, user.getRoles().size());
+        assertEquals(1, this.statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void findCredentialsByUsernameIsOneQuery() {
+        List<UserCredentialsRow> rows = this.userRepository.findCredentialsByUsername("user3");
+
+        assertEquals(2, rows.size());
+        assertEquals(1, this.statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void pageOfUsersWithRolesIsTwoQueries() {
+        List<Long> ids = this.userRepository.findPageIds(0, PageRequest.of(0, 5));
+        List<User> users = this.userRepository.findAllWithRolesByIdIn(ids);
+        users.forEach(user -> assertEquals(2, user.getRoles().size()));
+
+        assertEquals(5, users.size());
+        assertEquals(2, this.statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void streamAllLoadsRolesInOneQuery() {
+        List<User> users;
+        try (Stream<User> stream = this.userRepository.streamAll()) {
+            users = stream.collect(Collectors.toList());
+        }
+        users.forEach(user -> assertEquals(2, user.getRoles().size()));
+
+        assertEquals(USERS, users.size());
+        assertEquals(1, this.statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void searchIdsPagesThroughPrefixMatchesWithCursor() {
+        List<Long> firstPage = this.userRepository.searchIds(SearchField.USERNAME, "user", null, null, 4);
+        User last = this.userRepository.findById(firstPage.get(3)).orElseThrow(IllegalStateException::new);
+        List<Long> secondPage = this.userRepository.searchIds(SearchField.USERNAME, "user", null,
+                new SearchCursor(last.getUsername(), last.getId()), 4);
+
+        assertEquals(4, secondPage.size());
+        assertTrue(secondPage.stream().noneMatch(firstPage::contains));
+        assertEquals(1, this.userRepository.searchIds(SearchField.USERNAME, "user3", null, null, 4).size());
+    }
+
+    //Recorriendo todas las páginas con el cursor aparece cada usuario una sola vez
+    @Test
+    void searchIdsCursorVisitsEveryMatchOnce() {
+        List<Long> seen = new ArrayList<>();
+        SearchCursor cursor = null;
+        List<Long> page;
+        do {
+            page = this.userRepository.searchIds(SearchField.USERNAME, "user", null, cursor, 3);
+            seen.addAll(page);
+            if (!page.isEmpty()) {
+                User last = this.userRepository.findById(page.get(page.size() - 1)).orElseThrow(IllegalStateException::new);
+                cursor = new SearchCursor(last.getUsername(), last.getId());
+            }
+        } while (page.size() == 3);
+
+        assertEquals(USERS, seen.size());
+        assertEquals(USERS, seen.stream().distinct().count());
+    }
+
+    //%, _ y el carácter de escape (!) escritos por el usuario no son comodines
+    @Test
+    void searchIdsMatchesWildcardsLiterally() {
+        Long underscore = this.saveUser("under_score").getId();
+        this.saveUser("underXscore");
+        Long percent = this.saveUser("per%cent").getId();
+        this.saveUser("perXcent");
+        Long bang = this.saveUser("bang!_x").getId();
+        this.saveUser("bangX_x");
+        this.entityManager.flush();
+
+        assertEquals(Collections.singletonList(underscore), this.userRepository.searchIds(SearchField.USERNAME, "under_", null, null, 10));
+        assertEquals(Collections.singletonList(percent), this.userRepository.searchIds(SearchField.USERNAME, "per%", null, null, 10));
+        assertEquals(Collections.singletonList(bang), this.userRepository.searchIds(SearchField.USERNAME, "bang!_", null, null, 10));
+    }
+
+    @Test
+    void searchIdsFiltersByRole() {
+        Role roleUser = this.rolRepository.findByName("ROLE_USER");
+        Role roleGuest = this.rolRepository.save(new Role(null, "ROLE_GUEST"));
+
+        assertEquals(USERS, this.userRepository.searchIds(SearchField.NAME, "Name", roleUser, null, 50).size());
+        assertTrue(this.userRepository.searchIds(SearchField.NAME, "Name", roleGuest, null, 50).isEmpty());
+    }
+
+    private User saveUser(String username) {
+        return this.userRepository.save(new User(null, "Name " + username, username, "12345", new ArrayList<>()));
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.magadiflo.app.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LoginRateLimiterTest {
+
+    private LoginRateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        //2 intentos por username, sin recarga durante el test; la IP no limita
+        this.rateLimiter = new LoginRateLimiter(2, 0, 100, 0, new SimpleMeterRegistry());
+    }
+
+    //Para la BD "José", "JOSE" y "jose" son el mismo usuario: cambiar mayúsculas o acentos no da más intentos
+    @Test
+    void sharesTheBucketOfTheSameUsernameWrittenDifferently() {
+        assertDoesNotThrow(() -> this.rateLimiter.checkAttempt("José", "10.0.0.1"));
+        assertDoesNotThrow(() -> this.rateLimiter.checkAttempt("JOSE", "10.0.0.2"));
+        assertThrows(LoginRejectedException.class, () -> this.rateLimiter.checkAttempt("jose", "10.0.0.3"));
+    }
+
+    @Test
+    void limitsEachAddress() {
+        LoginRateLimiter limiter = new LoginRateLimiter(100, 0, 1, 0, new SimpleMeterRegistry());
+        assertDoesNotThrow(() -> limiter.checkAttempt("a", "10.0.0.1"));
+        assertThrows(LoginRejectedException.class, () -> limiter.checkAttempt("b", "10.0.0.1"));
+        assertDoesNotThrow(() -> limiter.checkAttempt("c", "10.0.0.2"));
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.magadiflo.app.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * El cost de BCrypt que se cambia en una instancia lo toman las demás desde la BD.
+ */
+@SpringBootTest
+@ActiveProfiles({"h2", "seed"})
+class PasswordHashPolicyStoreTest {
+
+    @Autowired
+    private PasswordHashPolicyStore policyStore;
+
+    @Autowired
+    private PasswordHashPolicy policy;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.security.password.bcrypt-strength}")
+    private int initialStrength;
+
+    @AfterEach
+    void restore() {
+        this.jdbcTemplate.update("update password_hash_policy set strength = null where id = 1");
+        this.policy.setStrength(this.initialStrength);
+    }
+
+    @Test
+    void savesTheStrengthAndAnnouncesIt() {
+        this.policyStore.save(5);
+
+        assertEquals(5, this.policy.getStrength());
+        assertEquals(5, this.jdbcTemplate.queryForObject("select strength from password_hash_policy where id = 1", Integer.class));
+        assertEquals(1, this.jdbcTemplate.queryForObject(
+                "select count(*) from change_log where entity_type = 'PASSWORD_POLICY' and id = (select max(id) from change_log)", Integer.class));
+    }
+
+    //Otra instancia lo cambió: aquí solo se ve la fila
+    @Test
+    void readsTheStrengthSavedByAnotherInstance() {
+        this.jdbcTemplate.update("update password_hash_policy set strength = 6 where id = 1");
+
+        this.policyStore.sync();
+
+        assertEquals(6, this.policy.getStrength());
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.magadiflo.app.security;
+
+import com.auth0.jwt.JWT;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Un refresh_token no sirve como access_token ni al revés, y un token sin roles no autentica a nadie.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles({"h2", "seed"})
+class TokenTypeTest {
+
+    private static final String ISSUER = "http://localhost/api/login";
+    private static final String USERNAME = "tinkler";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+
+    @Autowired
+    private JwtKeyManager keyManager;
+
+    @Test
+    void accessTokenIsAcceptedAsBearerToken() throws Exception {
+        this.mockMvc.perform(get("/api/users").header(HttpHeaders.AUTHORIZATION, bearer(this.accessToken())))
+                .andExpect(status().isOk());
+    }
+
+    //POST /api/logout solo pide estar autenticado: sin el chequeo del tipo bastaría cualquier token válido
+
+    @Test
+    void refreshTokenIsRejectedAsBearerToken() throws Exception {
+        String refreshToken = this.tokenProvider.createRefreshToken(USERNAME, ISSUER);
+
+        this.mockMvc.perform(post("/api/logout").header(HttpHeaders.AUTHORIZATION, bearer(refreshToken)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void tokenWithoutRolesIsRejected() throws Exception {
+        JwtKeyManager.ActiveKey signingKey = this.keyManager.getSigningKey();
+        String token = JWT.create()
+                .withKeyId(signingKey.getKid())
+                .withJWTId(UUID.randomUUID().toString())
+                .withSubject(USERNAME)
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60_000))
+                .withIssuer(ISSUER)
+                .withClaim(JwtTokenProvider.TOKEN_TYPE_CLAIM, JwtTokenProvider.ACCESS_TOKEN_TYPE)
+                .sign(signingKey.getAlgorithm());
+
+        this.mockMvc.perform(post("/api/logout").header(HttpHeaders.AUTHORIZATION, bearer(token)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void refreshTokenIsAcceptedAtRefreshEndpoint() throws Exception {
+        String refreshToken = this.tokenProvider.createRefreshToken(USERNAME, ISSUER);
+
+        this.mockMvc.perform(get("/api/token/refresh").header(HttpHeaders.AUTHORIZATION, bearer(refreshToken)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void accessTokenIsRejectedAtRefreshEndpoint() throws Exception {
+        this.mockMvc.perform(get("/api/token/refresh").header(HttpHeaders.AUTHORIZATION, bearer(this.accessToken())))
+                .andExpect(status().isForbidden());
+    }
+
+    private String accessToken() {
+        return this.tokenProvider.createAccessToken(USERNAME, Collections.singletonList("ROLE_USER"), ISSUER);
+    }
+
+    private static String bearer(String token) {
+        return "Bearer " + token;
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.magadiflo.app.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Los ids de change_log se ven en el orden en que se confirman las transacciones, no en el que se asignaron.
+ */
+class ChangeLogPollerCursorTest {
+
+    private static final long GAP_TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+
+    private ChangeLogPoller.Cursor cursor;
+
+    @BeforeEach
+    void setUp() {
+        this.cursor = new ChangeLogPoller.Cursor(GAP_TIMEOUT);
+        this.cursor.start(10);
+    }
+
+    @Test
+    void advancesWhileIdsAreContiguous() {
+        assertTrue(this.cursor.accept(11, 0));
+        assertTrue(this.cursor.accept(12, 0));
+        assertEquals(12, this.cursor.lastSeen());
+        assertEquals(0, this.cursor.pendingGaps());
+    }
+
+    @Test
+    void waitsForAMissingIdAndAppliesItOnce() {
+        //La transacción del 12 todavía no se confirmó cuando se leyó el 13
+        assertTrue(this.cursor.accept(11, 0));
+        assertTrue(this.cursor.accept(13, 0));
+        assertEquals(13, this.cursor.lastSeen());
+        assertEquals(Collections.singletonList(12L), this.cursor.gapIds());
+
+        //La siguiente lectura pide el 12 por su id, que ahora sí aparece
+        assertTrue(this.cursor.accept(12, 1));
+        assertFalse(this.cursor.accept(12, 1));
+        assertFalse(this.cursor.accept(13, 1));
+        assertEquals(0, this.cursor.pendingGaps());
+    }
+
+    //Los eventos nuevos se leen a partir del último visto, aunque detrás de un hueco haya más que un batch
+    @Test
+    void keepsReadingNewIdsWhileAGapIsOpen() {
+        this.cursor.accept(12, 0);
+        for (long id = 13; id <= 1000; id++) {
+            assertTrue(this.cursor.accept(id, 0));
+        }
+        assertEquals(1000, this.cursor.lastSeen());
+        assertEquals(Collections.singletonList(11L), this.cursor.gapIds());
+    }
+
+    @Test
+    void givesUpOnAMissingIdAfterTheTimeout() {
+        //El 12 hizo rollback: nunca va a aparecer
+        this.cursor.accept(11, 0);
+        this.cursor.accept(13, 0);
+        this.cursor.expireGaps(GAP_TIMEOUT - 1);
+        assertEquals(Collections.singletonList(12L), this.cursor.gapIds());
+
+        this.cursor.expireGaps(GAP_TIMEOUT);
+        assertTrue(this.cursor.gapIds().isEmpty());
+        assertFalse(this.cursor.accept(12, GAP_TIMEOUT + 1));
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.magadiflo.app.service;
+
+import com.magadiflo.app.dto.UserCredentials;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * La BD encuentra al usuario "admin" también como "ADMIN", pero solo se invalida la entrada "admin".
+ */
+class UserCredentialsCacheTest {
+
+    private UserCredentialsCache cache;
+    private AtomicInteger loads;
+    private Function<String, UserCredentials> loader;
+
+    @BeforeEach
+    void setUp() {
+        this.cache = new UserCredentialsCache(100, Duration.ofMinutes(5), new SimpleMeterRegistry());
+        this.loads = new AtomicInteger();
+        this.loader = username -> {
+            this.loads.incrementAndGet();
+            return new UserCredentials("admin", "{bcrypt}hash", Collections.singletonList("ROLE_ADMIN"));
+        };
+    }
+
+    @Test
+    void cachesTheCanonicalUsername() {
+        this.cache.get("admin", this.loader);
+        this.cache.get("admin", this.loader);
+
+        assertEquals(1, this.loads.get());
+    }
+
+    @Test
+    void doesNotKeepAnotherSpelling() {
+        assertEquals("admin", this.cache.get("ADMIN", this.loader).getUsername());
+        this.cache.get("ADMIN", this.loader);
+
+        assertEquals(2, this.loads.get());
+        assertEquals(0, this.cache.size());
+    }
+
+}
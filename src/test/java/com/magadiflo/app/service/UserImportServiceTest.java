@@ -0,0 +1,103 @@
+package com.magadiflo.app.service;
+
+import com.magadiflo.app.domain.User;
+import com.magadiflo.app.dto.UserImportResult;
+import com.magadiflo.app.dto.UserImportResult.Status;
+import com.magadiflo.app.repository.IUserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+/**
+ * La importación sobre H2 (perfil h2, el mismo contexto que SpringBootJwtAmigosCodeApplicationTests).
+ */
+@SpringBootTest
+@ActiveProfiles({"h2", "seed"})
+class UserImportServiceTest {
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private IUserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private DataVersion dataVersion;
+
+    @Autowired
+    private ChangeLog changeLog;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    //La collation de username no distingue mayúsculas ni acentos: en MySQL el segundo chocaría con el primero
+    @Test
+    void rejectsUsernamesRepeatedWithOtherCaseOrAccents() {
+        String suffix = UUID.randomUUID().toString();
+        List<UserImportResult> results = this.userImportService.importUsers(Arrays.asList(
+                user("josé" + suffix), user("JOSE" + suffix), user("Jose" + suffix)));
+
+        assertEquals(Status.CREATED, results.get(0).getStatus());
+        assertEquals(Status.REJECTED, results.get(1).getStatus());
+        assertEquals(Status.REJECTED, results.get(2).getStatus());
+    }
+
+    @Test
+    void appendsAChangeLogEventPerImportedUser() {
+        String username = "imported-" + UUID.randomUUID();
+        this.userImportService.importUsers(Arrays.asList(user(username)));
+
+        assertEquals(1, this.jdbcTemplate.queryForObject(
+                "select count(*) from change_log where entity_type = 'USER' and entity_key = ?", Integer.class, username));
+    }
+
+    //Como si otra solicitud hubiera creado el username entre la consulta de existentes y el insert
+    @Test
+    void retriesRowByRowWhenAnotherRequestInsertedTheSameUsername() {
+        String suffix = UUID.randomUUID().toString();
+        String taken = "taken-" + suffix;
+        this.userImportService.importUsers(Arrays.asList(user(taken)));
+
+        //El mock no encuentra ningún username existente
+        UserImportService service = new UserImportService(mock(IUserRepository.class), this.passwordEncoder,
+                this.entityManager, this.transactionTemplate, this.dataVersion, this.changeLog, 10, 5);
+        try {
+            List<UserImportResult> results = service.importUsers(Arrays.asList(
+                    user("first-" + suffix), user(taken), user("third-" + suffix)));
+
+            assertEquals(Status.CREATED, results.get(0).getStatus());
+            assertEquals(Status.REJECTED, results.get(1).getStatus());
+            assertEquals(Status.CREATED, results.get(2).getStatus());
+            assertEquals(2, this.userRepository.findExistingUsernames(Arrays.asList("first-" + suffix, "third-" + suffix)).size());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    private static User user(String username) {
+        return new User(null, "Imported user", username, "12345", new ArrayList<>());
+    }
+
+}